@@ -0,0 +1,194 @@
+package com.clipedge;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class CapturePipeline {
+    private static final int QUEUE_CAPACITY = 256;
+    private static final long BATCH_WINDOW_MS = 150;
+
+    private final ClipboardManager clipboardManager;
+    private final SettingsManager settingsManager;
+    private final Executor uiExecutor;
+    private final Consumer<List<String>> onApplied;
+    private final ArrayDeque<String> queue = new ArrayDeque<>();
+    private final ScheduledExecutorService scheduler;
+    private boolean flushScheduled = false;
+    private boolean applyPending = false;
+    // The batch handed to the UI executor and not stored yet, so shutdown can store it
+    private List<String> inFlight;
+    private boolean stopped = false;
+
+    // onApplied runs on the UI executor after each batch has been stored
+    public CapturePipeline(ClipboardManager clipboardManager, SettingsManager settingsManager,
+                           Executor uiExecutor, Consumer<List<String>> onApplied) {
+        this.clipboardManager = clipboardManager;
+        this.settingsManager = settingsManager;
+        this.uiExecutor = uiExecutor;
+        this.onApplied = onApplied;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "capture-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void submit(String text) {
+        submit(text, false);
+    }
+
+    // concealed is set when the source app flagged the copy as a password or other secret
+    public void submit(String text, boolean concealed) {
+        text = screen(text, concealed);
+        if (text == null) {
+            return;
+        }
+        synchronized (queue) {
+            // Back-to-back copies of the same text collapse into one
+            if (text.equals(queue.peekLast())) {
+                Metrics.increment("capture.merged");
+                return;
+            }
+            // When full, the oldest pending capture is the least relevant one
+            if (queue.size() == QUEUE_CAPACITY) {
+                queue.pollFirst();
+                Metrics.increment("capture.dropped");
+            }
+            queue.addLast(text);
+            Metrics.increment("capture.submitted");
+            scheduleFlush();
+        }
+    }
+
+    // Screens the text like a capture and stores it right away, for callers that need to
+    // know what was stored. null when it was screened out, blank or pinned already.
+    public ClipboardItem storeNow(String text) {
+        text = screen(text, false);
+        return text != null ? clipboardManager.addClipboardItem(text) : null;
+    }
+
+    // Runs on the capturing thread, before anything is queued or stored
+    private String screen(String text, boolean concealed) {
+        String action = settingsManager.getSensitiveAction();
+        if ("off".equals(action)) {
+            return text;
+        }
+        boolean passwordLike = settingsManager.isDetectPasswordLike();
+        long start = System.nanoTime();
+        boolean sensitive = concealed || SensitiveContentDetector.isSensitive(text, passwordLike);
+        Metrics.add("capture.screenNanos", System.nanoTime() - start);
+        if (!sensitive) {
+            return text;
+        }
+        Metrics.increment("capture.sensitive");
+        switch (action) {
+            case "mask":
+                // A concealed copy has no span to mask, all of it is the secret
+                return concealed ? SensitiveContentDetector.maskWhole(text) : SensitiveContentDetector.mask(text, passwordLike);
+            case "expire":
+                // Whether a copy was concealed is not stored, so those cannot be expired later
+                if (!concealed) {
+                    return text;
+                }
+                break;
+            default:
+                break;
+        }
+        Metrics.increment("capture.sensitive.skipped");
+        return null;
+    }
+
+    // Nothing queued, scheduled or waiting to be stored
+    public boolean isIdle() {
+        synchronized (queue) {
+            return queue.isEmpty() && !flushScheduled && !applyPending;
+        }
+    }
+
+    // Whatever was captured but not stored yet is stored now, on the calling thread, so
+    // nothing copied in the last batch window is lost on exit
+    public void shutdown() {
+        List<String> rest = new ArrayList<>();
+        synchronized (queue) {
+            stopped = true;
+            if (inFlight != null) {
+                rest.addAll(inFlight);
+                inFlight = null;
+            }
+            rest.addAll(queue);
+            queue.clear();
+        }
+        if (!rest.isEmpty()) {
+            List<ContentFeatures> features = new ArrayList<>(rest.size());
+            for (String text : rest) {
+                features.add(ContentFeatures.of(text));
+            }
+            try {
+                clipboardManager.addClipboardItems(rest, features);
+            } catch (Exception e) {
+                System.err.println("Error storing captured items: " + e.getMessage());
+            }
+        }
+        scheduler.shutdownNow();
+    }
+
+    private void scheduleFlush() {
+        if (!stopped && !flushScheduled && !applyPending) {
+            flushScheduled = true;
+            scheduler.schedule(this::flush, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        List<String> batch;
+        synchronized (queue) {
+            flushScheduled = false;
+            if (stopped || queue.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(queue);
+            queue.clear();
+            // Only one batch is ever waiting on the UI thread, the rest keep queueing here
+            applyPending = true;
+            inFlight = batch;
+        }
+        Metrics.increment("capture.batches");
+        // Classified and fingerprinted here so the UI thread only has to store the batch
+        long start = System.nanoTime();
+        List<ContentFeatures> features = new ArrayList<>(batch.size());
+        for (String text : batch) {
+            features.add(ContentFeatures.of(text));
+        }
+        Metrics.add("capture.featureNanos", System.nanoTime() - start);
+        uiExecutor.execute(() -> apply(batch, features));
+    }
+
+    private void apply(List<String> batch, List<ContentFeatures> features) {
+        synchronized (queue) {
+            // shutdown got to it first and has stored it
+            if (inFlight != batch) {
+                return;
+            }
+            inFlight = null;
+        }
+        try {
+            clipboardManager.addClipboardItems(batch, features);
+            onApplied.accept(batch);
+        } catch (Exception e) {
+            System.err.println("Error applying captured items: " + e.getMessage());
+        } finally {
+            synchronized (queue) {
+                applyPending = false;
+                if (!queue.isEmpty()) {
+                    scheduleFlush();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.clipedge;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Replays a capture trace through the real monitor, pipeline and ClipboardManager against a
+// stand-in clipboard, with a single thread standing in for the FX thread, and reports how
+// long each capture took from landing on the clipboard to being stored. Every run starts
+// from an empty history and default settings, so two builds see the same workload.
+// Run with: java -p <module path> -m com.clipedge/com.clipedge.CaptureReplay <trace>
+//           [--speed N] [--poll ms] [--store indexed|json]
+// --speed 1 keeps the trace's timing, 10 plays it ten times as fast and 0 as fast as it goes.
+public class CaptureReplay {
+    private static final long DRAIN_TIMEOUT_MS = 60_000;
+
+    // Holds one text at a time like a real clipboard. A new text waits until the monitor has
+    // seen the last one, so no capture is lost however fast the trace plays.
+    private static class ReplayClipboard implements ClipboardSource {
+        // Start times of the captures still on their way, by text
+        private final Map<String, Queue<Long>> pending;
+        private String text;
+        private boolean concealed;
+        private boolean seen = true;
+
+        ReplayClipboard(Map<String, Queue<Long>> pending) {
+            this.pending = pending;
+        }
+
+        synchronized void put(String text, boolean concealed) throws InterruptedException {
+            while (!seen) {
+                wait();
+            }
+            // The clock starts once the text is on the clipboard, waiting for the monitor to
+            // see the last one is no part of this capture. Still under the lock, so the
+            // monitor cannot read the text before its start time is there.
+            pending.computeIfAbsent(text, t -> new ConcurrentLinkedQueue<>()).add(System.nanoTime());
+            this.text = text;
+            this.concealed = concealed;
+            seen = false;
+        }
+
+        @Override
+        public synchronized String readText() {
+            if (!seen) {
+                seen = true;
+                notifyAll();
+            }
+            return text;
+        }
+
+        @Override
+        public synchronized boolean isConcealed() {
+            return concealed;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: CaptureReplay <trace> [--speed N] [--poll ms] [--store indexed|json]");
+            System.exit(2);
+        }
+        Path trace = Paths.get(args[0]);
+        double speed = 1;
+        long poll = ClipboardMonitor.DEFAULT_POLL_MS;
+        String backend = "indexed";
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--speed":
+                    speed = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--poll":
+                    poll = Long.parseLong(args[i + 1]);
+                    break;
+                case "--store":
+                    backend = args[i + 1];
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        List<TraceRecorder.Event> events = TraceRecorder.read(trace);
+        Path dir = Files.createTempDirectory("clipedge-replay");
+        try {
+            replay(events, dir, speed, poll, backend);
+        } finally {
+            SafeFiles.deleteRecursively(dir);
+        }
+    }
+
+    private static void replay(List<TraceRecorder.Event> events, Path dir, double speed, long poll, String backend)
+            throws IOException, InterruptedException {
+        SettingsManager settings = new SettingsManager(dir.resolve("settings.properties"));
+        HistoryStore store = "json".equals(backend)
+                ? new JsonHistoryStore(dir.resolve("history.json"))
+                : new IndexedHistoryStore(dir.resolve("history.db"));
+        ClipboardManager clipboardManager = new ClipboardManager(settings, store,
+                new JsonHistoryStore(dir.resolve("pinned.json")));
+
+        Map<String, Queue<Long>> pending = new ConcurrentHashMap<>();
+        List<Long> latencies = new ArrayList<>();
+        ExecutorService uiThread = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "replay-ui");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CapturePipeline pipeline = new CapturePipeline(clipboardManager, settings, uiThread, batch -> {
+            long now = System.nanoTime();
+            for (String text : batch) {
+                Queue<Long> starts = pending.get(text);
+                Long start = starts != null ? starts.poll() : null;
+                if (start != null) {
+                    synchronized (latencies) {
+                        latencies.add(now - start);
+                    }
+                }
+            }
+        });
+        ReplayClipboard clipboard = new ReplayClipboard(pending);
+        ClipboardMonitor monitor = new ClipboardMonitor(clipboard, pipeline, poll, null);
+
+        int copied = 0;
+        int unchanged = 0;
+        String last = null;
+        monitor.start();
+        long startNanos = System.nanoTime();
+        for (TraceRecorder.Event event : events) {
+            if (speed > 0) {
+                long due = startNanos + (long) (event.t * 1_000_000 / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                }
+            }
+            String text = TraceRecorder.textOf(event);
+            // Copying what is already there does not change the clipboard, the monitor never sees it
+            if (text.equals(last)) {
+                unchanged++;
+                continue;
+            }
+            last = text;
+            clipboard.put(text, event.concealed);
+            copied++;
+        }
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        while ((monitor.getCaptured() < copied || !pipeline.isIdle()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        monitor.stop();
+        pipeline.shutdown();
+        uiThread.shutdown();
+        clipboardManager.saveToFile();
+        store.close();
+
+        long[] sorted;
+        synchronized (latencies) {
+            sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+        System.out.println(String.format(Locale.ROOT, "%d events replayed in %.1f s (speed %s, poll %d ms, %s store)",
+                events.size(), elapsedNanos / 1e9, speed > 0 ? speed + "x" : "max", poll, backend));
+        System.out.println(String.format(Locale.ROOT, "%d copied, %d stored, %d unchanged, %d screened out or merged",
+                copied, sorted.length, unchanged, copied - sorted.length));
+        if (sorted.length > 0) {
+            System.out.println(String.format(Locale.ROOT,
+                    "capture latency ms: p50 %.2f  p90 %.2f  p99 %.2f  max %.2f  mean %.2f",
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                    sorted[sorted.length - 1] / 1e6, Arrays.stream(sorted).average().orElse(0) / 1e6));
+        }
+        for (Map.Entry<String, Long> metric : Metrics.snapshot().entrySet()) {
+            if (metric.getKey().startsWith("capture.")) {
+                System.out.println(metric.getKey() + " " + metric.getValue());
+            }
+        }
+    }
+
+    // Nearest rank, in milliseconds
+    private static double percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,149 @@
+package com.clipedge;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Per-category bitsets over the items of one store. Every item added gets the next slot,
+// so walking a set from its highest bit down lists items newest first, and filtering by
+// categories is a union of a few bitsets instead of a pass over the items' text.
+public class CategoryIndex {
+    private static final int MIN_SLOTS_BEFORE_RENUMBER = 64;
+
+    private final Map<String, Integer> slotById = new HashMap<>();
+    private final List<String> idBySlot = new ArrayList<>();
+    private final List<Integer> categoriesBySlot = new ArrayList<>();
+    private final BitSet live = new BitSet();
+    private final BitSet[] byCategory = new BitSet[ContentClassifier.Category.values().length];
+
+    public CategoryIndex() {
+        for (int i = 0; i < byCategory.length; i++) {
+            byCategory[i] = new BitSet();
+        }
+    }
+
+    // Adding an id that is already indexed moves it to the newest slot
+    public void add(String id, int categories) {
+        remove(id);
+        int slot = idBySlot.size();
+        idBySlot.add(id);
+        categoriesBySlot.add(categories);
+        slotById.put(id, slot);
+        live.set(slot);
+        for (ContentClassifier.Category category : ContentClassifier.Category.values()) {
+            if (ContentClassifier.isIn(categories, category)) {
+                byCategory[category.ordinal()].set(slot);
+            }
+        }
+    }
+
+    public void remove(String id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) {
+            return;
+        }
+        live.clear(slot);
+        for (BitSet bits : byCategory) {
+            bits.clear(slot);
+        }
+        idBySlot.set(slot, null);
+        // Freed slots are only reclaimed by renumbering once they outweigh the live ones
+        if (idBySlot.size() > MIN_SLOTS_BEFORE_RENUMBER && idBySlot.size() > 2 * slotById.size()) {
+            renumber();
+        }
+    }
+
+    public void clear() {
+        slotById.clear();
+        idBySlot.clear();
+        categoriesBySlot.clear();
+        live.clear();
+        for (BitSet bits : byCategory) {
+            bits.clear();
+        }
+    }
+
+    // Categories of an indexed item, -1 when the id is not indexed
+    public int categoriesOf(String id) {
+        Integer slot = slotById.get(id);
+        return slot != null ? categoriesBySlot.get(slot) : -1;
+    }
+
+    // Whether the item is indexed and in any of the given categories, or indexed at all for none
+    public boolean matches(String id, int categories) {
+        Integer slot = slotById.get(id);
+        return slot != null && (categories == 0 || (categoriesBySlot.get(slot) & categories) != 0);
+    }
+
+    public int count(ContentClassifier.Category category) {
+        return byCategory[category.ordinal()].cardinality();
+    }
+
+    // Ids in any of the given categories, newest first. No categories matches every item.
+    public List<String> ids(int categories, int offset, int limit) {
+        return ids(select(categories), live.length() - 1, 0, offset, limit);
+    }
+
+    // Same, only from newestId back to oldestId, both included. Slots follow the store's
+    // order, so a run of consecutive items is a run of slots.
+    public List<String> ids(int categories, String newestId, String oldestId, int offset, int limit) {
+        Integer newest = slotById.get(newestId);
+        Integer oldest = slotById.get(oldestId);
+        if (newest == null || oldest == null) {
+            return new ArrayList<>();
+        }
+        return ids(select(categories), newest, oldest, offset, limit);
+    }
+
+    private List<String> ids(BitSet matches, int fromSlot, int toSlot, int offset, int limit) {
+        List<String> ids = new ArrayList<>(Math.min(limit, slotById.size()));
+        int skipped = 0;
+        for (int slot = matches.previousSetBit(fromSlot); slot >= toSlot && ids.size() < limit; slot = matches.previousSetBit(slot - 1)) {
+            if (skipped++ >= offset) {
+                ids.add(idBySlot.get(slot));
+            }
+        }
+        return ids;
+    }
+
+    // Keeps the items that are in any of the given categories, in their order
+    public List<ClipboardItem> retain(List<ClipboardItem> items, int categories) {
+        BitSet matches = select(categories);
+        List<ClipboardItem> retained = new ArrayList<>();
+        for (ClipboardItem item : items) {
+            Integer slot = slotById.get(item.getId());
+            if (slot != null && matches.get(slot)) {
+                retained.add(item);
+            }
+        }
+        return retained;
+    }
+
+    private BitSet select(int categories) {
+        if (categories == 0) {
+            return live;
+        }
+        BitSet matches = new BitSet();
+        for (ContentClassifier.Category category : ContentClassifier.Category.values()) {
+            if (ContentClassifier.isIn(categories, category)) {
+                matches.or(byCategory[category.ordinal()]);
+            }
+        }
+        return matches;
+    }
+
+    private void renumber() {
+        List<String> ids = new ArrayList<>(slotById.size());
+        List<Integer> masks = new ArrayList<>(slotById.size());
+        for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+            ids.add(idBySlot.get(slot));
+            masks.add(categoriesBySlot.get(slot));
+        }
+        clear();
+        for (int i = 0; i < ids.size(); i++) {
+            add(ids.get(i), masks.get(i));
+        }
+    }
+}
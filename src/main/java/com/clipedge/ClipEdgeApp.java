@@ -2,57 +2,79 @@ package com.clipedge;
 
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.input.KeyCombination;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
-import java.awt.*;
-import java.awt.datatransfer.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 public class ClipEdgeApp extends Application {
+    private static final long HANDOFF_TIMEOUT_MS = 5000;
+    private static final KeyCombination PALETTE_SHORTCUT = KeyCombination.keyCombination("Shortcut+Shift+V");
+
+    // Taken in main, before JavaFX starts, so a second launch can hand off cheaply
+    private static InstanceLock instanceLock;
+    // The AppCDS training run's own storage, removed when it exits
+    private static Path trainingStorage;
+
     private FloatingMenu floatingMenu;
     private ClipboardModal clipboardModal;
     private ClipboardManager clipboardManager;
     private SettingsManager settingsManager;
-    private Thread clipboardMonitor;
-    private volatile boolean monitoring = true;
-    private String lastClipboard = "";
+    private PerformanceMode performanceMode;
+    private ClipboardMonitor clipboardMonitor;
+    private CapturePipeline capturePipeline;
+    private RetentionSweeper retentionSweeper;
+    private CompletableFuture<ClipboardManager> pendingManager;
+    private IpcServer ipcServer;
+    private HistoryWatcher historyWatcher;
+    private QuickPalette quickPalette;
+    private boolean viewer;
     
     @Override
     public void start(Stage primaryStage) {
         // Initialize managers
         settingsManager = new SettingsManager();
-        clipboardManager = new ClipboardManager(settingsManager);
+        // Without the lock another instance may own the history, so it is only viewed
+        viewer = getParameters().getRaw().contains("--viewer") || instanceLock == null;
+        String startupMode = settingsManager.getStartupMode();
 
         // Create floating menu
-        floatingMenu = new FloatingMenu(settingsManager);
+        performanceMode = new PerformanceMode(settingsManager);
+        floatingMenu = new FloatingMenu(settingsManager, performanceMode);
         floatingMenu.show();
-
-        // Create clipboard modal
-        clipboardModal = new ClipboardModal(clipboardManager, settingsManager, floatingMenu);
+        ResourceCache.preloadInBackground();
 
         // Set click handler on floating menu to toggle modal
-        floatingMenu.setOnClick(() -> {
-            if (clipboardModal.isShowing()) {
-                // Modal is already open, reposition it next to menu
-                clipboardModal.repositionNearMenu(floatingMenu);
-            } else {
-                // Modal is closed, open it
-                clipboardModal.showNearMenu(floatingMenu);
-                floatingMenu.setModalOpen(true);
-            }
-        });
+        floatingMenu.setOnClick(this::showModal);
 
         // Set close handler on floating menu
         floatingMenu.setOnClose(() -> {
-            clipboardModal.hide();
+            if (clipboardModal != null) {
+                clipboardModal.hide();
+            }
             floatingMenu.setModalOpen(false);
         });
 
-        // Show modal on startup
-        clipboardModal.showNearMenu(floatingMenu);
-        floatingMenu.setModalOpen(true);
-
-        // Start clipboard monitoring
-        startClipboardMonitoring();
+        if ("eager".equals(startupMode)) {
+            clipboardManager = new ClipboardManager(settingsManager, viewer);
+            finishStartup(startupMode);
+        } else {
+            // Load history off the FX thread while the menu paints its first frame
+            pendingManager = CompletableFuture.supplyAsync(() -> new ClipboardManager(settingsManager, viewer));
+        }
+        StartupMetrics.onFirstFrame(floatingMenu.getScene(), () -> {
+            if (!"eager".equals(startupMode)) {
+                clipboardManager = pendingManager.join();
+                finishStartup(startupMode);
+            }
+        });
 
         // Hide primary stage (we only use floating menu and modal)
         primaryStage.initStyle(StageStyle.UTILITY);
@@ -64,54 +86,229 @@ public class ClipEdgeApp extends Application {
         primaryStage.setOnCloseRequest(e -> cleanup());
     }
 
-    private void startClipboardMonitoring() {
-        clipboardMonitor = new Thread(() -> {
-            try {
-                Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-                while (monitoring) {
-                    try {
-                        if (clipboard.isDataFlavorAvailable(DataFlavor.stringFlavor)) {
-                            String data = (String) clipboard.getData(DataFlavor.stringFlavor);
-                            if (data != null && !data.isEmpty() && !data.equals(lastClipboard)) {
-                                lastClipboard = data;
-                                // Add to clipboard manager on JavaFX thread
-                                Platform.runLater(() -> {
-                                    clipboardManager.addClipboardItem(data);
-                                    if (settingsManager.isSoundEnabled()) {
-                                        // Play animation
-                                        floatingMenu.playAnimation();
-                                    }
-                                    // Update modal in real-time if it's showing
-                                    if (clipboardModal.isShowing()) {
-                                        clipboardModal.refreshItems();
-                                    }
-                                });
-                            }
-                        }
-                        Thread.sleep(500); // Check every 500ms
-                    } catch (Exception e) {
-                        // Ignore clipboard access errors
+    private void finishStartup(String startupMode) {
+        // Show modal on startup unless it should only be built on first use
+        if (!"lazy".equals(startupMode)) {
+            getClipboardModal().showNearMenu(floatingMenu);
+            floatingMenu.setModalOpen(true);
+        }
+
+        // Built now and kept hidden, so opening it never waits on layout or the store
+        quickPalette = new QuickPalette(clipboardManager, new PaletteModel(clipboardManager), settingsManager, performanceMode);
+        addPaletteShortcut(floatingMenu.getScene());
+        if (clipboardModal != null) {
+            addPaletteShortcut(clipboardModal.getScene());
+        }
+
+        if (Boolean.getBoolean("clipedge.cds.training")) {
+            // Training run for the AppCDS archive. The modal and palette have loaded the UI
+            // classes, nothing may monitor, sweep, serve or save.
+            getClipboardModal();
+            Platform.runLater(this::exitTrainingRun);
+            return;
+        }
+
+        if (viewer) {
+            startHistoryWatcher();
+            return;
+        }
+
+        if (clipboardManager.getStorageError() != null) {
+            showStorageError(clipboardManager.getStorageError());
+            return;
+        }
+
+        // Start clipboard monitoring
+        startClipboardMonitoring();
+
+        retentionSweeper = new RetentionSweeper(clipboardManager, settingsManager, () -> Platform.runLater(() -> {
+            if (clipboardModal != null && clipboardModal.isShowing()) {
+                clipboardModal.refreshItems();
+            }
+        }));
+        retentionSweeper.start();
+        startIpcServer();
+    }
+
+    // Capture stays off, the user has to fix the store or choose another backend first
+    private void showStorageError(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("ClipEdge");
+        alert.setHeaderText("Clipboard history is not being recorded");
+        alert.setContentText(message);
+        Themes.apply(alert.getDialogPane(), settingsManager.getTheme());
+        alert.show();
+    }
+
+    private void showModal() {
+        ClipboardModal modal = getClipboardModal();
+        if (modal.isShowing()) {
+            // Modal is already open, reposition it next to menu
+            modal.repositionNearMenu(floatingMenu);
+        } else {
+            // Modal is closed, open it
+            modal.showNearMenu(floatingMenu);
+            floatingMenu.setModalOpen(true);
+        }
+    }
+
+    // There is no portable global hotkey, so outside the app the palette is opened by binding
+    // a desktop shortcut to "clipedge palette"
+    private void addPaletteShortcut(Scene scene) {
+        scene.getAccelerators().put(PALETTE_SHORTCUT, quickPalette::toggle);
+    }
+
+    // Lets a second launch hand off to this instance instead of starting its own monitor,
+    // and scripts read and add history through the clipedge command
+    private void startIpcServer() {
+        ipcServer = new IpcServer(clipboardManager.getStorageDir().resolve(IpcServer.SOCKET_FILE));
+        ipcServer.register("show", (argument, in, out) -> {
+            Platform.runLater(this::showModal);
+            IpcServer.ok(out);
+        });
+        ipcServer.register("palette", (argument, in, out) -> {
+            Platform.runLater(quickPalette::toggle);
+            IpcServer.ok(out);
+        });
+        HistoryCommands.register(ipcServer, clipboardManager, capturePipeline, () -> Platform.runLater(() -> {
+            if (clipboardModal != null && clipboardModal.isShowing()) {
+                clipboardModal.refreshItems();
+            }
+        }));
+        try {
+            ipcServer.start();
+        } catch (IOException e) {
+            System.err.println("Error starting control socket: " + e.getMessage());
+        }
+    }
+
+    private void startHistoryWatcher() {
+        historyWatcher = new HistoryWatcher(clipboardManager.getStorageDir(), () -> {
+            if (clipboardManager.catchUp()) {
+                Platform.runLater(() -> {
+                    if (clipboardModal != null && clipboardModal.isShowing()) {
+                        clipboardModal.refreshItems();
                     }
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
+                });
+            }
+        });
+        try {
+            historyWatcher.start();
+        } catch (IOException e) {
+            System.err.println("Error watching clipboard history: " + e.getMessage());
+        }
+    }
+
+    private ClipboardModal getClipboardModal() {
+        if (clipboardModal == null) {
+            if (clipboardManager == null) {
+                clipboardManager = pendingManager.join();
+            }
+            clipboardModal = new ClipboardModal(clipboardManager, settingsManager, floatingMenu, performanceMode);
+            clipboardModal.setOnExit(this::cleanup);
+            if (quickPalette != null) {
+                addPaletteShortcut(clipboardModal.getScene());
+            }
+        }
+        return clipboardModal;
+    }
+
+    private void startClipboardMonitoring() {
+        // Captures are batched so a burst costs one save and one refresh
+        capturePipeline = new CapturePipeline(clipboardManager, settingsManager, Platform::runLater, batch -> {
+            if (settingsManager.isSoundEnabled()) {
+                // Play animation
+                floatingMenu.playCaptureAnimation();
+            }
+            // Update modal in real-time if it's showing
+            if (clipboardModal != null && clipboardModal.isShowing()) {
+                clipboardModal.refreshItems();
             }
         });
-        clipboardMonitor.setDaemon(true);
+        clipboardMonitor = new ClipboardMonitor(new SystemClipboardSource(), capturePipeline,
+                ClipboardMonitor.DEFAULT_POLL_MS, TraceRecorder.fromSystemProperties());
         clipboardMonitor.start();
     }
 
     private void cleanup() {
-        monitoring = false;
         if (clipboardMonitor != null) {
-            clipboardMonitor.interrupt();
+            clipboardMonitor.stop();
+        }
+        if (capturePipeline != null) {
+            capturePipeline.shutdown();
+        }
+        if (retentionSweeper != null) {
+            retentionSweeper.stop();
+        }
+        if (historyWatcher != null) {
+            historyWatcher.stop();
+        }
+        if (clipboardManager != null) {
+            clipboardManager.saveToFile();
+        }
+        if (ipcServer != null) {
+            ipcServer.stop();
+        }
+        if (instanceLock != null) {
+            instanceLock.release();
+        }
+        Platform.exit();
+        System.exit(0);
+    }
+
+    // Leaves without saving, the training storage only ever held an empty history
+    private void exitTrainingRun() {
+        if (instanceLock != null) {
+            instanceLock.release();
+        }
+        if (trainingStorage != null) {
+            try {
+                SafeFiles.deleteRecursively(trainingStorage);
+            } catch (IOException e) {
+                System.err.println("Error removing training storage: " + e.getMessage());
+            }
         }
-        clipboardManager.saveToFile();
         Platform.exit();
         System.exit(0);
     }
 
     public static void main(String[] args) {
+        if (ClipEdgeCli.isCommand(args)) {
+            System.exit(ClipEdgeCli.run(args));
+        }
+        StartupMetrics.markLaunch();
+        if (Boolean.getBoolean("clipedge.cds.training")) {
+            // The training run must start even next to a running app, so it gets storage of
+            // its own instead of that app's history, lock and socket
+            try {
+                trainingStorage = Files.createTempDirectory("clipedge-cds");
+                System.setProperty(SettingsManager.STORAGE_DIR_PROPERTY, trainingStorage.toString());
+            } catch (IOException e) {
+                System.err.println("Error creating training storage: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        // Viewers only read the history
+        if (!Arrays.asList(args).contains("--viewer")) {
+            Path storageDir = Paths.get(SettingsManager.getStorageDirectory());
+            try {
+                instanceLock = InstanceLock.tryAcquire(storageDir);
+                if (instanceLock == null) {
+                    handOff(storageDir);
+                }
+            } catch (IOException e) {
+                System.err.println("Error checking for a running instance, opening the history read-only: " + e.getMessage());
+            }
+        }
         launch(args);
     }
+
+    // Asks the running instance to show its history and exits
+    private static void handOff(Path storageDir) {
+        if (IpcClient.sendWithRetry(storageDir.resolve(IpcServer.SOCKET_FILE), "show", line -> {}, HANDOFF_TIMEOUT_MS)) {
+            System.exit(0);
+        }
+        System.err.println("ClipEdge is already running but not answering, exiting");
+        System.exit(1);
+    }
 }
\ No newline at end of file
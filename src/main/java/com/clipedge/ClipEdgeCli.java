@@ -0,0 +1,84 @@
+package com.clipedge;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Set;
+
+// Command line client for the running app, e.g.
+//   clipedge list --limit 20
+//   clipedge get <id>
+//   clipedge search foo
+//   clipedge range 2024-05-01 2024-05-07
+//   clipedge push < file
+//   clipedge palette | show
+public final class ClipEdgeCli {
+    private static final Set<String> COMMANDS = Set.of("list", "get", "search", "range", "push", "palette", "show");
+
+    private ClipEdgeCli() {
+    }
+
+    public static boolean isCommand(String[] args) {
+        return args.length > 0 && COMMANDS.contains(args[0]);
+    }
+
+    // Returns the process exit code
+    public static int run(String[] args) {
+        String request;
+        InputStream body = null;
+        switch (args[0]) {
+            case "list":
+                if (args.length == 1) {
+                    request = "list";
+                } else if (args.length == 3 && (args[1].equals("--limit") || args[1].equals("-n"))) {
+                    request = "list " + args[2];
+                } else {
+                    return usage();
+                }
+                break;
+            case "get":
+                if (args.length != 2) {
+                    return usage();
+                }
+                request = "get " + args[1];
+                break;
+            case "search":
+                if (args.length < 2) {
+                    return usage();
+                }
+                request = "search " + String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+                break;
+            case "range":
+                if (args.length != 2 && args.length != 3) {
+                    return usage();
+                }
+                request = "range " + String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+                break;
+            case "push":
+                request = "push";
+                body = System.in;
+                break;
+            default:
+                if (args.length != 1) {
+                    return usage();
+                }
+                request = args[0];
+                break;
+        }
+
+        Path socketFile = Paths.get(SettingsManager.getStorageDirectory(), IpcServer.SOCKET_FILE);
+        try {
+            return IpcClient.call(socketFile, request, body, System.out);
+        } catch (IOException e) {
+            System.err.println("ClipEdge is not running: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static int usage() {
+        System.err.println("Usage: clipedge list [--limit N] | get <id> | search <query> | range <date> [<date>] | push < file | palette | show");
+        return 2;
+    }
+}
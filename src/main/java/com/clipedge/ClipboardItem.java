@@ -1,20 +1,27 @@
 package com.clipedge;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import com.google.gson.annotations.JsonAdapter;
 import java.util.UUID;
 
 public class ClipboardItem {
     private String text;
-    private String timestamp;
+    // Capture time in epoch milliseconds, 0 when it is not known
+    @JsonAdapter(Timestamps.JsonAdapter.class)
+    private long timestamp;
     private String id;
 
     public ClipboardItem(String text) {
         this.text = text;
-        this.timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        this.timestamp = Timestamps.now();
         this.id = UUID.randomUUID().toString();
     }
 
+    public ClipboardItem(String id, String text, long timestamp) {
+        this.id = id;
+        this.text = text;
+        this.timestamp = timestamp;
+    }
+
     public String getText() {
         return text;
     }
@@ -23,11 +30,11 @@ public class ClipboardItem {
         this.text = text;
     }
 
-    public String getTimestamp() {
+    public long getTimestamp() {
         return timestamp;
     }
 
-    public void setTimestamp(String timestamp) {
+    public void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
     }
 
@@ -51,4 +58,4 @@ public class ClipboardItem {
     public int hashCode() {
         return id.hashCode();
     }
-}
\ No newline at end of file
+}
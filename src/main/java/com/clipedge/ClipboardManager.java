@@ -3,111 +3,785 @@ package com.clipedge;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class ClipboardManager {
-    private List<ClipboardItem> items;
+    static final int MAX_ITEMS = 100;
+    private static final int SINCE_PAGE_SIZE = 50;
+    private static final String USAGE_FILE = "usage.json";
+
+    private HistoryStore store;
+    // Pinned items live in their own small file and never take part in eviction
+    private HistoryStore pinned;
     private SettingsManager settingsManager;
-    private Gson gson;
-    private Path storageFile;
+    private Path storageDir;
+    private boolean readOnly;
+    // Set when the history could not be opened the way the settings ask for, nothing is
+    // recorded then
+    private String storageError;
+    private final List<HistoryListener> listeners = new CopyOnWriteArrayList<>();
+    // Changes made by the current mutation, reported once it is done
+    private final List<ClipboardItem> addedItems = new ArrayList<>();
+    private final List<String> removedIds = new ArrayList<>();
+    private boolean historyReset = false;
+    private final CategoryIndex historyIndex = new CategoryIndex();
+    private final CategoryIndex pinnedIndex = new CategoryIndex();
+    private final NearDuplicateIndex nearDuplicates = new NearDuplicateIndex();
+    private UsageTracker usage;
 
     public ClipboardManager(SettingsManager settingsManager) {
+        this(settingsManager, false);
+    }
+
+    // A read-only manager views the history another instance owns and never writes to it.
+    // Every mutator does nothing then, so its indexes always match the stores.
+    public ClipboardManager(SettingsManager settingsManager, boolean readOnly) {
         this.settingsManager = settingsManager;
-        this.items = new ArrayList<>();
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.readOnly = readOnly;
         initStorage();
-        loadFromFile();
+        usage = new UsageTracker(storageDir.resolve(USAGE_FILE));
+        rebuildIndexes();
+    }
+
+    // Lets tools and tests run against stores of their choice
+    public ClipboardManager(SettingsManager settingsManager, HistoryStore store, HistoryStore pinned) {
+        this.settingsManager = settingsManager;
+        this.store = store;
+        this.pinned = pinned;
+        this.usage = new UsageTracker();
+        rebuildIndexes();
     }
 
     private void initStorage() {
-        String storageDir = getStorageDirectory();
+        String directory = getStorageDirectory();
         try {
-            Files.createDirectories(Paths.get(storageDir));
-            storageFile = Paths.get(storageDir, "clipboard_history.json");
+            storageDir = Files.createDirectories(Paths.get(directory));
         } catch (IOException e) {
             e.printStackTrace();
             // Fallback to temp directory
-            storageFile = Paths.get(System.getProperty("java.io.tmpdir"), "cedge_history.json");
+            storageDir = Paths.get(System.getProperty("java.io.tmpdir"));
+        }
+        Path pinnedFile = storageDir.resolve("pinned.json");
+        Path jsonFile = storageDir.resolve("clipboard_history.json");
+        Path indexedFile = storageDir.resolve("clipboard_history.db");
+        if ("encrypted".equals(settingsManager.getStorageBackend())) {
+            try {
+                initEncryptedStorage(pinnedFile, jsonFile, indexedFile);
+            } catch (IOException e) {
+                // A plain store would write in the clear what was meant to be encrypted, so
+                // nothing is opened and nothing recorded until the fault is fixed
+                System.err.println("Error opening encrypted clipboard history, nothing will be recorded: " + e.getMessage());
+                storageError = "The encrypted clipboard history could not be opened: " + e.getMessage();
+                readOnly = true;
+                store = JsonHistoryStore.detached();
+                pinned = JsonHistoryStore.detached();
+            }
+            return;
+        }
+        pinned = new JsonHistoryStore(pinnedFile, readOnly);
+        if ("json".equals(settingsManager.getStorageBackend())) {
+            store = new JsonHistoryStore(jsonFile, readOnly);
+            return;
+        }
+        boolean migrate = !readOnly && !Files.exists(indexedFile) && Files.exists(jsonFile);
+        try {
+            store = new IndexedHistoryStore(indexedFile, null, readOnly);
+            if (migrate) {
+                importItems(store, JsonHistoryStore.readItems(jsonFile));
+            }
+        } catch (IOException e) {
+            System.err.println("Error opening clipboard history, using JSON store: " + e.getMessage());
+            if (migrate) {
+                // Half an import would stop the next start from trying again
+                discard(store, indexedFile);
+            }
+            store = new JsonHistoryStore(jsonFile, readOnly);
+        }
+    }
+
+    // History and pins both go to encrypted logs. Plain copies are imported once and then
+    // removed, otherwise encrypting would leave everything readable next to it.
+    private void initEncryptedStorage(Path pinnedFile, Path jsonFile, Path indexedFile) throws IOException {
+        RecordCipher cipher = RecordCipher.fromKeyFile(storageDir.resolve("history.key"));
+        Path encryptedFile = storageDir.resolve("clipboard_history.edb");
+        Path encryptedPinnedFile = storageDir.resolve("pinned.edb");
+        boolean migrate = !readOnly && !Files.exists(encryptedFile);
+        boolean migratePinned = !readOnly && !Files.exists(encryptedPinnedFile);
+        HistoryStore encrypted = new IndexedHistoryStore(encryptedFile, cipher, readOnly);
+        HistoryStore encryptedPinned = null;
+        try {
+            encryptedPinned = new IndexedHistoryStore(encryptedPinnedFile, cipher, readOnly);
+            if (migrate) {
+                if (Files.exists(indexedFile)) {
+                    HistoryStore plain = new IndexedHistoryStore(indexedFile);
+                    List<ClipboardItem> items = plain.page(0, Integer.MAX_VALUE);
+                    plain.close();
+                    importItems(encrypted, items);
+                    checkImported(encryptedFile, cipher, items);
+                } else if (Files.exists(jsonFile)) {
+                    List<ClipboardItem> items = JsonHistoryStore.readItems(jsonFile);
+                    importItems(encrypted, items);
+                    checkImported(encryptedFile, cipher, items);
+                }
+            }
+            if (migratePinned && Files.exists(pinnedFile)) {
+                List<ClipboardItem> items = JsonHistoryStore.readItems(pinnedFile);
+                importItems(encryptedPinned, items);
+                checkImported(encryptedPinnedFile, cipher, items);
+            }
+        } catch (IOException e) {
+            // The plain copies are still all there, the next start imports them again
+            if (migrate) {
+                discard(encrypted, encryptedFile);
+            } else {
+                encrypted.close();
+            }
+            if (encryptedPinned != null && migratePinned) {
+                discard(encryptedPinned, encryptedPinnedFile);
+            } else if (encryptedPinned != null) {
+                encryptedPinned.close();
+            }
+            throw e;
+        }
+        // Only once everything is known to be in the encrypted logs
+        if (migrate) {
+            deletePlainCopies(indexedFile);
+            deletePlainCopies(jsonFile);
+        }
+        if (migratePinned) {
+            deletePlainCopies(pinnedFile);
         }
+        store = encrypted;
+        pinned = encryptedPinned;
+    }
+
+    // Reads the encrypted log back from disk, every item has to be there and decrypt
+    private static void checkImported(Path file, RecordCipher cipher, List<ClipboardItem> items) throws IOException {
+        IndexedHistoryStore written = new IndexedHistoryStore(file, cipher, true);
+        try {
+            for (ClipboardItem item : items) {
+                ClipboardItem copy = written.findById(item.getId());
+                if (copy == null || !copy.getText().equals(item.getText())) {
+                    throw new IOException("item " + item.getId() + " did not make it into " + file.getFileName());
+                }
+            }
+        } finally {
+            written.close();
+        }
+    }
+
+    private static void discard(HistoryStore store, Path file) {
+        if (store != null) {
+            store.close();
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Error removing incomplete clipboard history: " + e.getMessage());
+        }
+    }
+
+    // The file, its backups and whatever recovery and compaction left next to it
+    private void deletePlainCopies(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        for (int generation = 1; generation <= SafeFiles.BACKUP_GENERATIONS; generation++) {
+            Files.deleteIfExists(SafeFiles.backupPath(file, generation));
+        }
+        Files.deleteIfExists(SafeFiles.corruptPath(file));
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".compact"));
     }
 
     private String getStorageDirectory() {
-        // Use default storage location only
-        String os = System.getProperty("os.name").toLowerCase();
-        String home = System.getProperty("user.home");
-        if (os.contains("win")) {
-            return System.getenv("APPDATA") + File.separator + "Cedge";
-        } else if (os.contains("mac")) {
-            return home + File.separator + "Library" + File.separator + "Application Support" + File.separator + "Cedge";
-        } else {
-            return home + File.separator + ".config" + File.separator + "Cedge";
+        // Same place the settings and the instance lock live
+        return SettingsManager.getStorageDirectory();
+    }
+
+    // Stores log and carry on when an append fails, so the count tells whether all made it
+    private static void importItems(HistoryStore target, List<ClipboardItem> newestFirst) throws IOException {
+        int before = target.size();
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            target.append(newestFirst.get(i));
+        }
+        target.flush();
+        int imported = target.size() - before;
+        if (imported != newestFirst.size()) {
+            throw new IOException("only " + imported + " of " + newestFirst.size() + " items could be imported");
         }
     }
 
-    public void addClipboardItem(String text) {
-        if (text == null || text.trim().isEmpty()) {
+    public void addHistoryListener(HistoryListener listener) {
+        listeners.add(listener);
+    }
+
+    public int historyListenerCount() {
+        return listeners.size();
+    }
+
+    // Returns the stored item, or null when nothing was stored because the text is blank
+    // or pinned already
+    public synchronized ClipboardItem addClipboardItem(String text) {
+        if (readOnly) {
+            return null;
+        }
+        ClipboardItem added = insertItem(text, ContentFeatures.of(text));
+        if (added != null) {
+            saveToFile();
+        }
+        fireHistoryChanged();
+        return added;
+    }
+
+    // Applies a whole batch of captures as one update with a single save
+    public synchronized void addClipboardItems(List<String> texts) {
+        List<ContentFeatures> features = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            features.add(ContentFeatures.of(text));
+        }
+        addClipboardItems(texts, features);
+    }
+
+    // Same with the texts' features already worked out, so the caller can do that off the UI thread
+    public synchronized void addClipboardItems(List<String> texts, List<ContentFeatures> features) {
+        if (readOnly) {
             return;
         }
+        boolean changed = false;
+        for (int i = 0; i < texts.size(); i++) {
+            changed |= insertItem(texts.get(i), features.get(i)) != null;
+        }
+        if (changed) {
+            saveToFile();
+        }
+        fireHistoryChanged();
+    }
+
+    private ClipboardItem insertItem(String text, ContentFeatures features) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
         
         text = text.trim();
         
-        // Check for duplicates if enabled
+        // Re-copying a pinned snippet leaves both the pin and the history alone
+        if (pinned.findByText(text) != null) {
+            return null;
+        }
+        
+        ClipboardItem item = new ClipboardItem(text);
+        
+        // Check for duplicates if enabled, a re-capture keeps the earlier copy's usage
         if (!settingsManager.allowDuplicates()) {
-            // Create a final copy for use in lambda
-            final String finalText = text;
-            items.removeIf(item -> item.getText().equals(finalText));
+            ClipboardItem existing = store.findByText(text);
+            if (existing != null) {
+                usage.transfer(existing.getId(), item.getId());
+                deleteFromHistory(existing.getId());
+            }
         }
         
-        ClipboardItem newItem = new ClipboardItem(text);
-        items.add(0, newItem); // Add to beginning
+        appendToHistory(item, features);
+        usage.recordCapture(item.getId(), System.currentTimeMillis());
         
         // Limit to 100 items
-        if (items.size() > 100) {
-            items = new ArrayList<>(items.subList(0, 100));
+        while (store.size() > MAX_ITEMS) {
+            String victim = evictionCandidate();
+            if (victim == null) {
+                break;
+            }
+            deleteFromHistory(victim);
+            usage.remove(victim);
+        }
+        return item;
+    }
+
+    // frecency evicts the least used item, sparing what this mutation just added,
+    // age simply evicts the oldest
+    private String evictionCandidate() {
+        if ("frecency".equals(settingsManager.getEvictionPolicy())) {
+            Set<String> justAdded = new HashSet<>();
+            for (ClipboardItem added : addedItems) {
+                justAdded.add(added.getId());
+            }
+            String victim = usage.lowest(id -> historyIndex.categoriesOf(id) >= 0 && !justAdded.contains(id));
+            if (victim != null) {
+                return victim;
+            }
+        }
+        List<ClipboardItem> oldest = store.page(store.size() - 1, 1);
+        return oldest.isEmpty() ? null : oldest.get(0).getId();
+    }
+
+    private void appendToHistory(ClipboardItem item, ContentFeatures features) {
+        store.append(item);
+        historyIndex.add(item.getId(), features.getCategories());
+        nearDuplicates.add(item.getId(), features.getFingerprint());
+        addedItems.add(item);
+    }
+
+    private boolean deleteFromHistory(String id) {
+        // Moving to the pins keeps the text readable, anything else takes it away
+        if (pinnedIndex.categoriesOf(id) < 0) {
+            LazyTransferable.retain(this, id);
+        }
+        boolean deleted = store.delete(id);
+        if (deleted) {
+            historyIndex.remove(id);
+            nearDuplicates.remove(id);
+            removedIds.add(id);
+        }
+        return deleted;
+    }
+
+    private boolean deletePinned(String id) {
+        if (historyIndex.categoriesOf(id) < 0) {
+            LazyTransferable.retain(this, id);
+        }
+        boolean deleted = pinned.delete(id);
+        if (deleted) {
+            pinnedIndex.remove(id);
+        }
+        return deleted;
+    }
+
+    private void rebuildIndexes() {
+        rebuildIndex(historyIndex, nearDuplicates, store);
+        rebuildIndex(pinnedIndex, null, pinned);
+        retainUsage();
+    }
+
+    // Usage of items that are gone is dropped, items the tracker has not seen start from their capture
+    private void retainUsage() {
+        List<String> ids = new ArrayList<>(historyIndex.ids(0, 0, Integer.MAX_VALUE));
+        ids.addAll(pinnedIndex.ids(0, 0, Integer.MAX_VALUE));
+        usage.retain(ids);
+    }
+
+    // Indexes every item of the store, oldest first so the indexes keep the store's order.
+    // Pins are not grouped, so they come without a near-duplicate index.
+    private void rebuildIndex(CategoryIndex index, NearDuplicateIndex duplicates, HistoryStore source) {
+        index.clear();
+        if (duplicates != null) {
+            duplicates.clear();
+        }
+        List<String> ids = new ArrayList<>();
+        List<ContentFeatures> features = new ArrayList<>();
+        int offset = 0;
+        while (true) {
+            List<ClipboardItem> page = source.page(offset, SINCE_PAGE_SIZE);
+            for (ClipboardItem item : page) {
+                ids.add(item.getId());
+                features.add(duplicates != null ? ContentFeatures.of(item.getText())
+                        : new ContentFeatures(ContentClassifier.classify(item.getText()), 0));
+                usage.ensure(item.getId(), item.getTimestamp());
+            }
+            if (page.size() < SINCE_PAGE_SIZE) {
+                break;
+            }
+            offset += page.size();
+        }
+        for (int i = ids.size() - 1; i >= 0; i--) {
+            index.add(ids.get(i), features.get(i).getCategories());
+            if (duplicates != null) {
+                duplicates.add(ids.get(i), features.get(i).getFingerprint());
+            }
         }
-        
-        saveToFile();
     }
 
-    public void removeItem(ClipboardItem item) {
-        items.remove(item);
+    private void fireHistoryChanged() {
+        if (addedItems.isEmpty() && removedIds.isEmpty() && !historyReset) {
+            return;
+        }
+        List<ClipboardItem> added = List.copyOf(addedItems);
+        List<String> removed = List.copyOf(removedIds);
+        boolean reset = historyReset;
+        addedItems.clear();
+        removedIds.clear();
+        historyReset = false;
+        for (HistoryListener listener : listeners) {
+            listener.historyChanged(added, removed, reset);
+        }
+    }
+
+    public synchronized void removeItem(ClipboardItem item) {
+        if (readOnly) {
+            return;
+        }
+        deleteFromHistory(item.getId());
+        deletePinned(item.getId());
+        usage.remove(item.getId());
         saveToFile();
+        fireHistoryChanged();
+    }
+
+    // Removes several items with a single save, returns how many were found
+    public synchronized int removeItems(Collection<String> ids) {
+        if (readOnly) {
+            return 0;
+        }
+        int removed = 0;
+        for (String id : ids) {
+            if (deleteFromHistory(id) || deletePinned(id)) {
+                usage.remove(id);
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            saveToFile();
+        }
+        fireHistoryChanged();
+        return removed;
+    }
+
+    // Removes items from the history only. Whatever was pinned since the ids were picked
+    // stays, pins are never evicted.
+    public synchronized int evictFromHistory(Collection<String> ids) {
+        if (readOnly) {
+            return 0;
+        }
+        int removed = 0;
+        for (String id : ids) {
+            if (deleteFromHistory(id)) {
+                usage.remove(id);
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            saveToFile();
+        }
+        fireHistoryChanged();
+        return removed;
+    }
+
+    // Rewrites the history's files so items deleted from it cannot be read back from them
+    public synchronized void purgeHistory() {
+        if (readOnly) {
+            return;
+        }
+        store.purge();
     }
 
-    public void clearAll() {
-        items.clear();
+    public synchronized void clearAll() {
+        if (readOnly) {
+            return;
+        }
+        LazyTransferable.retainAll(this);
+        store.clear();
+        historyIndex.clear();
+        nearDuplicates.clear();
+        retainUsage();
         saveToFile();
+        historyReset = true;
+        fireHistoryChanged();
     }
 
-    public List<ClipboardItem> getItems() {
-        return new ArrayList<>(items);
+    // Moves the item out of the history into the pinned set
+    public synchronized void pin(ClipboardItem item) {
+        pinItems(List.of(item));
     }
 
-    public void saveToFile() {
-        try {
-            String json = gson.toJson(items);
-            Files.write(storageFile, json.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        } catch (IOException e) {
-            System.err.println("Error saving clipboard history: " + e.getMessage());
+    // Pins several items with a single save of each store, returns how many were not pinned yet
+    public synchronized int pinItems(Collection<ClipboardItem> items) {
+        if (readOnly) {
+            return 0;
+        }
+        int pinnedCount = 0;
+        boolean historyChanged = false;
+        for (ClipboardItem item : items) {
+            // Already pinned, or evicted, swept or expired since it was selected
+            if (pinned.findById(item.getId()) != null || store.findById(item.getId()) == null) {
+                continue;
+            }
+            int categories = historyIndex.categoriesOf(item.getId());
+            pinned.append(item);
+            pinnedIndex.add(item.getId(), categories >= 0 ? categories : ContentClassifier.classify(item.getText()));
+            historyChanged |= deleteFromHistory(item.getId());
+            pinnedCount++;
+        }
+        if (pinnedCount > 0) {
+            pinned.flush();
         }
+        if (historyChanged) {
+            store.flush();
+        }
+        fireHistoryChanged();
+        return pinnedCount;
     }
 
-    public void loadFromFile() {
-        try {
-            if (Files.exists(storageFile)) {
-                String json = new String(Files.readAllBytes(storageFile));
-                Type listType = new TypeToken<ArrayList<ClipboardItem>>(){}.getType();
-                List<ClipboardItem> loaded = gson.fromJson(json, listType);
-                if (loaded != null) {
-                    items = loaded;
+    // Returns the item to the top of the history, stamped with the time it came back so the
+    // history stays in time order
+    public synchronized void unpin(ClipboardItem item) {
+        if (readOnly || !deletePinned(item.getId())) {
+            return;
+        }
+        pinned.flush();
+        if (store.findById(item.getId()) == null) {
+            appendToHistory(new ClipboardItem(item.getId(), item.getText(), Timestamps.now()),
+                    ContentFeatures.of(item.getText()));
+            store.flush();
+        }
+        fireHistoryChanged();
+    }
+
+    public synchronized boolean isPinned(ClipboardItem item) {
+        return pinned.findById(item.getId()) != null;
+    }
+
+    public synchronized List<ClipboardItem> getPinnedItems() {
+        return pinned.page(0, pinned.size());
+    }
+
+    public synchronized List<ClipboardItem> getItems() {
+        return store.page(0, store.size());
+    }
+
+    // Newest first, only the requested rows are loaded
+    public synchronized List<ClipboardItem> page(int offset, int limit) {
+        return store.page(offset, limit);
+    }
+
+    // Items captured after the given time, newest first
+    public synchronized List<ClipboardItem> since(long millis) {
+        return store.page(0, store.countSince(millis + 1));
+    }
+
+    // History items captured in the range, newest first. The range is a run of consecutive
+    // items, found with two binary searches over the store's time order.
+    public synchronized List<ClipboardItem> range(TimeRange range, int offset, int limit) {
+        int newest = store.countSince(range.getTo());
+        int count = store.countSince(range.getFrom()) - newest;
+        int from = Math.min(Math.max(offset, 0), count);
+        return store.page(newest + from, Math.min(limit, count - from));
+    }
+
+    public synchronized int countInRange(TimeRange range) {
+        return store.countSince(range.getFrom()) - store.countSince(range.getTo());
+    }
+
+    public synchronized int size() {
+        return store.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return store.size() == 0;
+    }
+
+    public synchronized HistorySnapshot snapshot() {
+        return new HistorySnapshot(store, store.ids());
+    }
+
+    public synchronized List<ClipboardItem> search(String query, int limit) {
+        return store.search(query, limit);
+    }
+
+    public synchronized List<String> searchIds(String query, int limit) {
+        return store.searchIds(query, limit);
+    }
+
+    // History items in any of the given categories that contain the query, newest first.
+    // No categories and a blank query match everything. Categories come from the index,
+    // so only the items of the requested page are loaded unless there is a query.
+    public synchronized List<ClipboardItem> filter(int categories, String query, int offset, int limit) {
+        return filter(categories, query, TimeRange.ALL, offset, limit);
+    }
+
+    // Same, limited to the items captured in the range
+    public synchronized List<ClipboardItem> filter(int categories, String query, TimeRange range, int offset, int limit) {
+        if (query == null || query.isBlank()) {
+            List<String> ids;
+            if (range.isAll()) {
+                ids = historyIndex.ids(categories, offset, limit);
+            } else if (categories == 0) {
+                return range(range, offset, limit);
+            } else {
+                int newest = store.countSince(range.getTo());
+                int oldest = store.countSince(range.getFrom()) - 1;
+                if (newest > oldest) {
+                    return new ArrayList<>();
                 }
+                ids = historyIndex.ids(categories, store.page(newest, 1).get(0).getId(),
+                        store.page(oldest, 1).get(0).getId(), offset, limit);
+            }
+            List<ClipboardItem> page = new ArrayList<>();
+            for (String id : ids) {
+                ClipboardItem item = store.findById(id);
+                if (item != null) {
+                    page.add(item);
+                }
+            }
+            return page;
+        }
+        List<ClipboardItem> matches = inRange(historyIndex.retain(store.search(query, Integer.MAX_VALUE), categories), range);
+        return new ArrayList<>(matches.subList(Math.min(offset, matches.size()), Math.min(offset + limit, matches.size())));
+    }
+
+    public synchronized List<ClipboardItem> filterPinned(int categories, String query) {
+        return filterPinned(categories, query, TimeRange.ALL);
+    }
+
+    public synchronized List<ClipboardItem> filterPinned(int categories, String query, TimeRange range) {
+        List<ClipboardItem> items = query == null || query.isBlank()
+                ? pinned.page(0, pinned.size()) : pinned.search(query, Integer.MAX_VALUE);
+        return inRange(pinnedIndex.retain(items, categories), range);
+    }
+
+    private static List<ClipboardItem> inRange(List<ClipboardItem> items, TimeRange range) {
+        if (range.isAll()) {
+            return items;
+        }
+        List<ClipboardItem> kept = new ArrayList<>();
+        for (ClipboardItem item : items) {
+            if (range.contains(item.getTimestamp())) {
+                kept.add(item);
+            }
+        }
+        return kept;
+    }
+
+    public synchronized List<ClipboardItem> filterByFrecency(int categories, String query, int offset, int limit) {
+        return filterByFrecency(categories, query, TimeRange.ALL, offset, limit);
+    }
+
+    // Same as filter, ordered by frecency instead of recency. The ranking knows nothing about
+    // capture times, so items outside the range, or that no longer load, are skipped once loaded.
+    public synchronized List<ClipboardItem> filterByFrecency(int categories, String query, TimeRange range,
+                                                             int offset, int limit) {
+        Set<String> matching = null;
+        if (query != null && !query.isBlank()) {
+            matching = new HashSet<>();
+            for (ClipboardItem item : store.search(query, Integer.MAX_VALUE)) {
+                matching.add(item.getId());
+            }
+        }
+        List<ClipboardItem> page = new ArrayList<>();
+        int skipped = 0;
+        for (String id : usage.ranked()) {
+            if (page.size() == limit) {
+                break;
+            }
+            if (!historyIndex.matches(id, categories) || (matching != null && !matching.contains(id))) {
+                continue;
+            }
+            ClipboardItem item = store.findById(id);
+            if (item == null || !range.contains(item.getTimestamp())) {
+                continue;
+            }
+            // Only items that passed every filter count towards the offset, or the pages
+            // after one with a dropped item would skip items
+            if (skipped++ < offset) {
+                continue;
+            }
+            page.add(item);
+        }
+        return page;
+    }
+
+    public synchronized List<ClipboardItem> mostUsed(int categories, String query, int k) {
+        return mostUsed(categories, query, TimeRange.ALL, k);
+    }
+
+    // The k history or pinned items used most, narrowed like filter
+    public synchronized List<ClipboardItem> mostUsed(int categories, String query, TimeRange range, int k) {
+        String needle = query == null ? "" : query.trim().toLowerCase();
+        List<ClipboardItem> items = new ArrayList<>();
+        for (String id : usage.top(k)) {
+            if (!historyIndex.matches(id, categories) && !pinnedIndex.matches(id, categories)) {
+                continue;
+            }
+            ClipboardItem item = findById(id);
+            if (item != null && range.contains(item.getTimestamp())
+                    && (needle.isEmpty() || item.getText().toLowerCase().contains(needle))) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    // Counts a copy out of the history towards the item's frecency
+    public synchronized void recordUse(String id) {
+        recordUses(List.of(id));
+    }
+
+    // Several items copied out together, saved once
+    public synchronized void recordUses(Collection<String> ids) {
+        if (readOnly) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (String id : ids) {
+            usage.recordUse(id, now);
+        }
+        usage.save();
+    }
+
+    public synchronized int useCount(String id) {
+        return usage.uses(id);
+    }
+
+    // Near-duplicate history items share a group, named after the first of them
+    public synchronized String nearDuplicateGroup(String id) {
+        return nearDuplicates.groupOf(id);
+    }
+
+    // Items in the category across the history and the pins
+    // Categories worked out when the item was captured, -1 when it is not in the history
+    public synchronized int categoriesOf(String id) {
+        return historyIndex.categoriesOf(id);
+    }
+
+    public synchronized int categoryCount(ContentClassifier.Category category) {
+        return historyIndex.count(category) + pinnedIndex.count(category);
+    }
+
+    public synchronized ClipboardItem findById(String id) {
+        ClipboardItem item = store.findById(id);
+        return item != null ? item : pinned.findById(id);
+    }
+
+    // Streams the text of a history or pinned item, null when it is gone
+    public synchronized InputStream openText(String id) throws IOException {
+        InputStream text = store.openText(id);
+        return text != null ? text : pinned.openText(id);
+    }
+
+    // Keeps only the newest items cached, the rest is read back from disk when needed
+    public synchronized void trimCaches(int hotItems) {
+        store.trimCaches(hotItems);
+        pinned.trimCaches(hotItems);
+    }
+
+    public Path getStorageDir() {
+        return storageDir;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    // Why nothing is being recorded, null when the history opened fine
+    public String getStorageError() {
+        return storageError;
+    }
+
+    public synchronized void saveToFile() {
+        store.flush();
+        pinned.flush();
+        if (!readOnly) {
+            usage.save();
+        }
+    }
+
+    // Picks up changes the owning instance made, returns true when the view needs a refresh
+    public synchronized boolean catchUp() {
+        boolean changed = store.catchUp();
+        historyReset = changed;
+        changed |= pinned.catchUp();
+        if (changed) {
+            // The owning instance keeps the scores, a viewer picks them up along with the history
+            if (readOnly) {
+                usage = new UsageTracker(storageDir.resolve(USAGE_FILE));
             }
-        } catch (Exception e) {
-            System.err.println("Error loading clipboard history: " + e.getMessage());
-            items = new ArrayList<>();
+            rebuildIndexes();
         }
+        fireHistoryChanged();
+        return changed;
     }
-}
\ No newline at end of file
+}
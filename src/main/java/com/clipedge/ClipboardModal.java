@@ -3,11 +3,15 @@ package com.clipedge;
 import javafx.animation.*;
 import javafx.application.Platform;
 import javafx.geometry.*;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.effect.DropShadow;
-import javafx.scene.image.Image;
+import javafx.css.PseudoClass;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.stage.Screen;
@@ -16,6 +20,16 @@ import javafx.stage.StageStyle;
 import javafx.util.Duration;
 import java.awt.Toolkit;
 import java.awt.datatransfer.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javafx.scene.shape.Line;
 import javafx.scene.layout.Region;
@@ -26,13 +40,42 @@ public class ClipboardModal {
     private VBox root;
     private javafx.scene.control.ScrollPane scrollPane;
     private VBox itemsContainer;
+    private VBox pinnedSection;
+    private VBox historySection;
     private StackPane toastContainer;
     private ClipboardManager clipboardManager;
     private SettingsManager settingsManager;
     private FloatingMenu floatingMenu;
+    private PerformanceMode performanceMode;
     private Timeline autoCloseTimer;
+    private PauseTransition idleTimer;
+    private boolean released = false;
     private double startX, startY;
     private String currentClipboardText = "";
+    private String currentClipboardId;
+    private int loadedCount = 0;
+    private boolean hasMorePages = false;
+    private int activeCategories = 0;
+    private String searchQuery = "";
+    private String view;
+    private String timeline = TIMELINE_ALL;
+    private DatePicker rangeStart;
+    private DatePicker rangeEnd;
+    private DatePicker jumpDate;
+    private final Map<String, ToggleButton> timelineChips = new HashMap<>();
+    private PauseTransition searchDelay;
+    private final Map<ContentClassifier.Category, ToggleButton> filterChips = new EnumMap<>(ContentClassifier.Category.class);
+    // Near-duplicate groups with a row on screen since the last refresh, and the ones opened
+    private final Map<String, DuplicateGroup> shownGroups = new HashMap<>();
+    private final Set<String> expandedGroups = new HashSet<>();
+    // Items picked for the bulk actions, in the order they were picked. Select all takes in
+    // results that have no row yet.
+    private final Map<String, ClipboardItem> selection = new LinkedHashMap<>();
+    private String selectionAnchor;
+    private HBox selectionBar;
+    private javafx.scene.control.Label selectionLabel;
+    // Shuts the whole app down, monitor and pending captures included
+    private Runnable onExitHandler;
     
     private double currentWidth;
     private double currentHeight;
@@ -43,6 +86,25 @@ public class ClipboardModal {
     private static final double MIN_HEIGHT = 500;
     private static final double MAX_WIDTH = 800;
     private static final double MAX_HEIGHT = 900;
+    private static final int PAGE_SIZE = 30;
+    private static final double LOAD_MORE_THRESHOLD = 0.9;
+    private static final double SEARCH_DELAY_MS = 150;
+    private static final int MOST_USED_COUNT = 20;
+    private static final String VIEW_RECENT = "recent";
+    private static final String VIEW_FRECENCY = "frecency";
+    private static final String VIEW_MOST_USED = "mostUsed";
+    private static final String TIMELINE_ALL = "all";
+    private static final String TIMELINE_TODAY = "today";
+    private static final String TIMELINE_YESTERDAY = "yesterday";
+    private static final String TIMELINE_RANGE = "range";
+    private static final String TIMELINE_JUMP = "jump";
+    // Setting value, label and text of what goes between items copied together
+    private static final String[][] JOIN_SEPARATORS = {{"newline", "New line", "\n"},
+            {"blankLine", "Blank line", "\n\n"}, {"space", "Space", " "}, {"comma", "Comma", ", "}, {"tab", "Tab", "\t"}};
+    
+    private static final PseudoClass CURRENT = PseudoClass.getPseudoClass("current");
+    private static final PseudoClass PINNED = PseudoClass.getPseudoClass("pinned");
+    private static final PseudoClass SELECTED = PseudoClass.getPseudoClass("selected");
     
     private ResizeMode resizeMode = ResizeMode.NONE;
     
@@ -50,12 +112,15 @@ public class ClipboardModal {
         NONE, N, S, E, W, NE, NW, SE, SW
     }
 
-    public ClipboardModal(ClipboardManager clipboardManager, SettingsManager settingsManager, FloatingMenu floatingMenu) {
+    public ClipboardModal(ClipboardManager clipboardManager, SettingsManager settingsManager,
+                          FloatingMenu floatingMenu, PerformanceMode performanceMode) {
         this.clipboardManager = clipboardManager;
         this.settingsManager = settingsManager;
         this.floatingMenu = floatingMenu;
+        this.performanceMode = performanceMode;
         this.currentWidth = settingsManager.getModalWidth();
         this.currentHeight = settingsManager.getModalHeight();
+        this.view = settingsManager.getHistoryView();
         initUI();
         updateCurrentClipboard();
     }
@@ -64,45 +129,39 @@ public class ClipboardModal {
         stage = new Stage();
         stage.initStyle(StageStyle.TRANSPARENT);
         stage.setAlwaysOnTop(true);
+        try {
+            stage.getIcons().add(ResourceCache.getImage(ResourceCache.APP_ICON,
+                    ResourceCache.APP_ICON_SIZE, ResourceCache.APP_ICON_SIZE));
+        } catch (Exception e) {
+            // Window icon is optional
+        }
         
         root = new VBox();
-        root.setStyle(getGlassmorphicStyle());
-        root.setEffect(new DropShadow(30, Color.rgb(196, 181, 224, 0.3)));
+        root.getStyleClass().add("modal-root");
         
         // Header
         HBox header = createHeader();
         
+        VBox filterBar = createFilterBar();
+        
+        selectionBar = createSelectionBar();
+        
         // Items container with toast overlay
         StackPane contentStack = new StackPane();
         
         itemsContainer = new VBox(8);
         itemsContainer.setPadding(new javafx.geometry.Insets(16));
+        pinnedSection = new VBox(8);
+        historySection = new VBox(8);
         
         scrollPane = new javafx.scene.control.ScrollPane(itemsContainer);
         scrollPane.setFitToWidth(true);
-        scrollPane.setStyle("-fx-background-color: transparent; " +
-                           "-fx-background: transparent; " +
-                           "-fx-border-color: transparent;");
+        scrollPane.getStyleClass().add("history-scroll");
         scrollPane.setHbarPolicy(javafx.scene.control.ScrollPane.ScrollBarPolicy.NEVER);
         VBox.setVgrow(scrollPane, Priority.ALWAYS);
-        
-        // Dark theme scrollbar styling - wait for skin to be ready
-        scrollPane.skinProperty().addListener((obs, oldSkin, newSkin) -> {
-            if (newSkin != null) {
-                Platform.runLater(() -> {
-                    javafx.scene.Node scrollBar = scrollPane.lookup(".scroll-bar:vertical");
-                    if (scrollBar != null) {
-                        scrollBar.setStyle("-fx-background-color: transparent;");
-                        javafx.scene.Node track = scrollPane.lookup(".scroll-bar:vertical .track");
-                        if (track != null) {
-                            track.setStyle("-fx-background-color: rgba(30, 30, 40, 0.5); -fx-background-radius: 5px;");
-                        }
-                        javafx.scene.Node thumb = scrollPane.lookup(".scroll-bar:vertical .thumb");
-                        if (thumb != null) {
-                            thumb.setStyle("-fx-background-color: rgba(196, 181, 224, 0.5); -fx-background-radius: 5px;");
-                        }
-                    }
-                });
+        scrollPane.vvalueProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal.doubleValue() >= LOAD_MORE_THRESHOLD && hasMorePages) {
+                loadNextPage();
             }
         });
         
@@ -117,10 +176,17 @@ public class ClipboardModal {
         // Footer with drag icon and auto-close slider
         HBox footer = createFooter();
         
-        root.getChildren().addAll(header, contentStack, footer);
+        root.getChildren().addAll(header, filterBar, selectionBar, contentStack, footer);
         
         Scene scene = new Scene(root, currentWidth, currentHeight);
         scene.setFill(Color.TRANSPARENT);
+        // Text fields keep these keys for themselves while they have the focus
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.A, KeyCombination.SHORTCUT_DOWN), this::selectAllResults);
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.DELETE), this::deleteSelected);
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.ESCAPE), this::clearSelection);
+        Themes.apply(scene, settingsManager.getTheme());
+        settingsManager.addThemeListener(theme -> Themes.apply(scene, theme));
+        performanceMode.register(scene);
         stage.setScene(scene);
         
         setupEventHandlers();
@@ -131,17 +197,18 @@ public class ClipboardModal {
         HBox header = new HBox(16);
         header.setPadding(new javafx.geometry.Insets(16, 20, 16, 20));
         header.setAlignment(Pos.CENTER_LEFT);
-        header.setStyle("-fx-background-color: rgba(15, 15, 20, 0.8); -fx-background-radius: 10 10 0 0;");
+        header.getStyleClass().add("modal-header");
         
         try {
-            ImageView logo = new ImageView(new Image(getClass().getResourceAsStream("/cledge.png")));
-            logo.setFitHeight(40);
-            logo.setFitWidth(85);
-            logo.setStyle("-fx-effect: dropshadow(gaussian, rgba(196, 181, 224, 0.5), 10, 0, 0, 0);");
+            ImageView logo = new ImageView(ResourceCache.getImage(ResourceCache.HEADER_LOGO,
+                    ResourceCache.HEADER_LOGO_WIDTH, ResourceCache.HEADER_LOGO_HEIGHT));
+            logo.setFitHeight(ResourceCache.HEADER_LOGO_HEIGHT);
+            logo.setFitWidth(ResourceCache.HEADER_LOGO_WIDTH);
+            logo.getStyleClass().add("header-logo");
             header.getChildren().add(logo);
         } catch (Exception e) {
             javafx.scene.control.Label title = new javafx.scene.control.Label("ClipEdge");
-            title.setStyle("-fx-text-fill: #C4B5E0; -fx-font-size: 20px; -fx-font-weight: bold;");
+            title.getStyleClass().add("header-title");
             header.getChildren().add(title);
         }
         
@@ -149,21 +216,219 @@ public class ClipboardModal {
         HBox.setHgrow(spacer, Priority.ALWAYS);
         
         javafx.scene.control.Button clearBtn = new javafx.scene.control.Button("Clear");
-        clearBtn.setStyle(getButtonStyle());
+        clearBtn.getStyleClass().add("modal-button");
         clearBtn.setOnAction(e -> showClearConfirmation());
         
         javafx.scene.control.Button closeBtn = new javafx.scene.control.Button("Close");
-        closeBtn.setStyle(getButtonStyle());
+        closeBtn.getStyleClass().add("modal-button");
         closeBtn.setOnAction(e -> closeApplication());
         
-        header.getChildren().addAll(spacer, clearBtn, closeBtn);
+        header.getChildren().add(spacer);
+        // A viewer cannot change the history, so it gets no controls that would
+        if (!clipboardManager.isReadOnly()) {
+            header.getChildren().add(clearBtn);
+        }
+        header.getChildren().add(closeBtn);
         return header;
     }
+    // Search and category chips narrow the list together, chips in any selected category
+    private VBox createFilterBar() {
+        TextField searchField = new TextField();
+        searchField.setPromptText("Search");
+        searchField.getStyleClass().add("search-field");
+        searchDelay = new PauseTransition(Duration.millis(SEARCH_DELAY_MS));
+        searchDelay.setOnFinished(e -> applyFilters());
+        searchField.textProperty().addListener((obs, oldText, newText) -> {
+            searchQuery = newText.trim();
+            searchDelay.playFromStart();
+        });
+        
+        FlowPane chips = new FlowPane(6, 6);
+        for (ContentClassifier.Category category : ContentClassifier.Category.values()) {
+            ToggleButton chip = new ToggleButton(category.getLabel());
+            chip.getStyleClass().add("filter-chip");
+            chip.setOnAction(e -> {
+                activeCategories ^= category.mask();
+                applyFilters();
+            });
+            filterChips.put(category, chip);
+            chips.getChildren().add(chip);
+        }
+        
+        // Recent lists by capture time, Frecency by decayed use, Most used only the top few
+        HBox views = new HBox(6);
+        ToggleGroup viewGroup = new ToggleGroup();
+        String[][] viewChoices = {{VIEW_RECENT, "Recent"}, {VIEW_FRECENCY, "Frecency"}, {VIEW_MOST_USED, "Most used"}};
+        for (String[] choice : viewChoices) {
+            ToggleButton viewButton = new ToggleButton(choice[1]);
+            viewButton.getStyleClass().addAll("filter-chip", "view-chip");
+            viewButton.setToggleGroup(viewGroup);
+            viewButton.setSelected(choice[0].equals(view));
+            viewButton.setOnAction(e -> {
+                // One view is always selected
+                viewButton.setSelected(true);
+                if (!choice[0].equals(view)) {
+                    view = choice[0];
+                    settingsManager.setHistoryView(view);
+                    applyFilters();
+                }
+            });
+            views.getChildren().add(viewButton);
+        }
+        
+        VBox filterBar = new VBox(8, searchField, views, createTimelineBar(), chips);
+        filterBar.setPadding(new javafx.geometry.Insets(12, 16, 0, 16));
+        filterBar.getStyleClass().add("filter-bar");
+        return filterBar;
+    }
+
+    // Today and Yesterday are whole days, Range spans the days picked and a jump lists
+    // everything up to the end of the picked day, newest first
+    private VBox createTimelineBar() {
+        HBox presets = new HBox(6);
+        presets.setAlignment(Pos.CENTER_LEFT);
+        ToggleGroup timelineGroup = new ToggleGroup();
+        String[][] choices = {{TIMELINE_ALL, "All time"}, {TIMELINE_TODAY, "Today"},
+                {TIMELINE_YESTERDAY, "Yesterday"}, {TIMELINE_RANGE, "Range"}};
+        for (String[] choice : choices) {
+            ToggleButton chip = new ToggleButton(choice[1]);
+            chip.getStyleClass().addAll("filter-chip", "timeline-chip");
+            chip.setToggleGroup(timelineGroup);
+            chip.setSelected(choice[0].equals(timeline));
+            chip.setOnAction(e -> {
+                chip.setSelected(true);
+                setTimeline(choice[0]);
+            });
+            timelineChips.put(choice[0], chip);
+            presets.getChildren().add(chip);
+        }
+
+        jumpDate = new DatePicker();
+        jumpDate.setPromptText("Jump to date");
+        jumpDate.getStyleClass().add("date-field");
+        jumpDate.setPrefWidth(130);
+        jumpDate.setOnAction(e -> {
+            if (jumpDate.getValue() != null) {
+                timelineGroup.selectToggle(null);
+                setTimeline(TIMELINE_JUMP);
+            }
+        });
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        presets.getChildren().addAll(spacer, jumpDate);
+
+        rangeStart = new DatePicker(java.time.LocalDate.now().minusDays(7));
+        rangeEnd = new DatePicker(java.time.LocalDate.now());
+        HBox customRange = new HBox(6, rangeStart, new javafx.scene.control.Label("to"), rangeEnd);
+        customRange.setAlignment(Pos.CENTER_LEFT);
+        customRange.getStyleClass().add("timeline-range");
+        for (DatePicker picker : List.of(rangeStart, rangeEnd)) {
+            picker.getStyleClass().add("date-field");
+            picker.setPrefWidth(130);
+            picker.setOnAction(e -> {
+                if (TIMELINE_RANGE.equals(timeline)) {
+                    applyFilters();
+                }
+            });
+        }
+        customRange.visibleProperty().bind(timelineChips.get(TIMELINE_RANGE).selectedProperty());
+        customRange.managedProperty().bind(customRange.visibleProperty());
+
+        return new VBox(6, presets, customRange);
+    }
+
+    private void setTimeline(String choice) {
+        if (!TIMELINE_JUMP.equals(choice)) {
+            jumpDate.setValue(null);
+        }
+        timeline = choice;
+        applyFilters();
+    }
+
+    // Worked out on every refresh, so Today moves on at midnight
+    private TimeRange timeRange() {
+        switch (timeline) {
+            case TIMELINE_TODAY:
+                return TimeRange.today();
+            case TIMELINE_YESTERDAY:
+                return TimeRange.yesterday();
+            case TIMELINE_RANGE:
+                if (rangeStart.getValue() == null || rangeEnd.getValue() == null) {
+                    return TimeRange.ALL;
+                }
+                return TimeRange.days(rangeStart.getValue(), rangeEnd.getValue());
+            case TIMELINE_JUMP:
+                return jumpDate.getValue() != null ? TimeRange.until(jumpDate.getValue()) : TimeRange.ALL;
+            default:
+                return TimeRange.ALL;
+        }
+    }
+
+    // Shown while anything is selected. Each action is one change to the history, saved once.
+    private HBox createSelectionBar() {
+        selectionLabel = new javafx.scene.control.Label();
+        selectionLabel.getStyleClass().add("selection-label");
+        
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        
+        javafx.scene.control.Button allBtn = new javafx.scene.control.Button("All");
+        allBtn.getStyleClass().add("small-button");
+        allBtn.setTooltip(new Tooltip("Select all results"));
+        allBtn.setOnAction(e -> selectAllResults());
+        
+        javafx.scene.control.Button pinBtn = new javafx.scene.control.Button("Pin");
+        pinBtn.getStyleClass().add("small-button");
+        pinBtn.setTooltip(new Tooltip("Pin selected"));
+        pinBtn.setOnAction(e -> pinSelected());
+        
+        ChoiceBox<String> separatorChoice = new ChoiceBox<>();
+        separatorChoice.getStyleClass().add("separator-choice");
+        for (String[] separator : JOIN_SEPARATORS) {
+            separatorChoice.getItems().add(separator[1]);
+            if (separator[0].equals(settingsManager.getJoinSeparator())) {
+                separatorChoice.setValue(separator[1]);
+            }
+        }
+        if (separatorChoice.getValue() == null) {
+            separatorChoice.setValue(JOIN_SEPARATORS[0][1]);
+        }
+        separatorChoice.setOnAction(e ->
+                settingsManager.setJoinSeparator(JOIN_SEPARATORS[separatorChoice.getSelectionModel().getSelectedIndex()][0]));
+        
+        javafx.scene.control.Button copyBtn = new javafx.scene.control.Button("Copy");
+        copyBtn.getStyleClass().add("small-button");
+        copyBtn.setTooltip(new Tooltip("Copy selected joined with the separator"));
+        copyBtn.setOnAction(e -> copySelectedJoined(
+                JOIN_SEPARATORS[separatorChoice.getSelectionModel().getSelectedIndex()][2]));
+        
+        javafx.scene.control.Button deleteBtn = new javafx.scene.control.Button("Delete");
+        deleteBtn.getStyleClass().add("small-button");
+        deleteBtn.setTooltip(new Tooltip("Delete selected"));
+        deleteBtn.setOnAction(e -> deleteSelected());
+        
+        javafx.scene.control.Button clearBtn = new javafx.scene.control.Button("X");
+        clearBtn.getStyleClass().add("small-button");
+        clearBtn.setTooltip(new Tooltip("Clear selection"));
+        clearBtn.setOnAction(e -> clearSelection());
+        
+        HBox bar = new HBox(6, selectionLabel, spacer, allBtn, pinBtn, copyBtn, separatorChoice, deleteBtn, clearBtn);
+        if (clipboardManager.isReadOnly()) {
+            bar.getChildren().removeAll(pinBtn, deleteBtn);
+        }
+        bar.setAlignment(Pos.CENTER_LEFT);
+        bar.getStyleClass().add("selection-bar");
+        VBox.setMargin(bar, new javafx.geometry.Insets(8, 16, 0, 16));
+        bar.setVisible(false);
+        bar.setManaged(false);
+        return bar;
+    }
+
 private HBox createFooter() {
     HBox footer = new HBox(12);
     footer.setPadding(new javafx.geometry.Insets(16, 20, 20, 20));
     footer.setAlignment(Pos.CENTER);
-    footer.setStyle("-fx-background-color: rgba(15, 15, 20, 0.8); -fx-background-radius: 0 0 10 10;");
+    footer.getStyleClass().add("modal-footer");
 
     // Drag icon (crossed arrows)
     Pane dragIcon = new Pane();
@@ -173,11 +438,8 @@ private HBox createFooter() {
     Line arrow1 = new Line(4, 4, 20, 20);
     Line arrow2 = new Line(20, 4, 4, 20);
 
-    for (Line arrow : new Line[]{arrow1, arrow2}) {
-        arrow.setStroke(javafx.scene.paint.Color.web("rgba(196,181,224,0.7)"));
-        arrow.setStrokeWidth(2);
-        arrow.setStrokeLineCap(javafx.scene.shape.StrokeLineCap.ROUND);
-    }
+    arrow1.getStyleClass().add("drag-line");
+    arrow2.getStyleClass().add("drag-line");
 
     dragIcon.getChildren().addAll(arrow1, arrow2);
 
@@ -194,18 +456,23 @@ private HBox createFooter() {
         dragIcon.setCursor(javafx.scene.Cursor.OPEN_HAND);
     });
 
+    javafx.scene.control.Button themeBtn = new javafx.scene.control.Button("Theme");
+    themeBtn.getStyleClass().add("small-button");
+    themeBtn.setTooltip(new Tooltip("Switch theme"));
+    themeBtn.setOnAction(e -> settingsManager.setTheme(Themes.next(settingsManager.getTheme())));
+
     Region spacer = new Region();
     HBox.setHgrow(spacer, Priority.ALWAYS);
 
     javafx.scene.control.Label autoCloseLabel = new javafx.scene.control.Label("Auto-close:");
-    autoCloseLabel.setStyle("-fx-text-fill: #C4B5E0; -fx-font-size: 12px;");
+    autoCloseLabel.getStyleClass().add("footer-label");
 
     Slider autoCloseSlider = new Slider(1, 30, settingsManager.getAutoCloseDelay());
     autoCloseSlider.setPrefWidth(150);
-    autoCloseSlider.setStyle(getSliderStyle());
+    autoCloseSlider.getStyleClass().add("auto-close-slider");
 
     javafx.scene.control.Label timeLabel = new javafx.scene.control.Label(settingsManager.getAutoCloseDelay() + "s");
-    timeLabel.setStyle("-fx-text-fill: #C4B5E0; -fx-font-size: 12px; -fx-min-width: 30;");
+    timeLabel.getStyleClass().addAll("footer-label", "time-label");
 
     autoCloseSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
         int seconds = newVal.intValue();
@@ -213,31 +480,219 @@ private HBox createFooter() {
         settingsManager.setAutoCloseDelay(seconds);
     });
 
-    footer.getChildren().addAll(dragIcon, spacer, autoCloseLabel, autoCloseSlider, timeLabel);
+    footer.getChildren().addAll(dragIcon, themeBtn, spacer, autoCloseLabel, autoCloseSlider, timeLabel);
     return footer;
 }
 
+    // A new set of results, what was selected from the last one no longer applies
+    private void applyFilters() {
+        selection.clear();
+        selectionAnchor = null;
+        refreshItems();
+    }
+
     public void refreshItems() {
         itemsContainer.getChildren().clear();
+        loadedCount = 0;
+        hasMorePages = false;
+        shownGroups.clear();
+        selection.keySet().removeIf(id -> clipboardManager.findById(id) == null);
+        updateSelectionBar();
         updateCurrentClipboard();
+        updateFilterChips();
+        updateTimelineChips();
+        refreshPinned();
         
-        for (ClipboardItem item : clipboardManager.getItems()) {
-            HBox itemBox = createItemBox(item);
-            itemsContainer.getChildren().add(itemBox);
+        if (clipboardManager.isEmpty() && pinnedSection.getChildren().isEmpty()) {
+            showEmptyLabel(isFiltering() ? "No matching items" : "No clipboard history yet\nCopy something to get started!");
+            return;
         }
-        
-        if (clipboardManager.getItems().isEmpty()) {
-            javafx.scene.control.Label emptyLabel = new javafx.scene.control.Label("No clipboard history yet\nCopy something to get started!");
-            emptyLabel.setStyle("-fx-text-fill: rgba(196, 181, 224, 0.6); -fx-font-size: 14px; -fx-text-alignment: center;");
-            emptyLabel.setAlignment(Pos.CENTER);
-            emptyLabel.setPrefHeight(100);
-            itemsContainer.getChildren().add(emptyLabel);
+        historySection.getChildren().clear();
+        if (!pinnedSection.getChildren().isEmpty()) {
+            itemsContainer.getChildren().add(pinnedSection);
+        }
+        itemsContainer.getChildren().add(historySection);
+        loadNextPage();
+        if (loadedCount == 0 && pinnedSection.getChildren().isEmpty()) {
+            itemsContainer.getChildren().clear();
+            showEmptyLabel(VIEW_MOST_USED.equals(view) && !isFiltering()
+                    ? "Nothing copied from the history yet" : "No matching items");
+        }
+    }
+
+    private void showEmptyLabel(String text) {
+        javafx.scene.control.Label emptyLabel = new javafx.scene.control.Label(text);
+        emptyLabel.getStyleClass().add("empty-label");
+        emptyLabel.setAlignment(Pos.CENTER);
+        emptyLabel.setPrefHeight(100);
+        itemsContainer.getChildren().add(emptyLabel);
+    }
+
+    private boolean isFiltering() {
+        return activeCategories != 0 || !searchQuery.isEmpty() || !timeRange().isAll();
+    }
+
+    // Counts come from the category index, so this costs nothing per refresh
+    private void updateFilterChips() {
+        for (Map.Entry<ContentClassifier.Category, ToggleButton> entry : filterChips.entrySet()) {
+            int count = clipboardManager.categoryCount(entry.getKey());
+            ToggleButton chip = entry.getValue();
+            chip.setText(count > 0 ? entry.getKey().getLabel() + " " + count : entry.getKey().getLabel());
+            chip.setDisable(count == 0 && !chip.isSelected());
+        }
+    }
+
+    // Each count is two binary searches over the history's time order
+    private void updateTimelineChips() {
+        ToggleButton today = timelineChips.get(TIMELINE_TODAY);
+        ToggleButton yesterday = timelineChips.get(TIMELINE_YESTERDAY);
+        int todayCount = clipboardManager.countInRange(TimeRange.today());
+        int yesterdayCount = clipboardManager.countInRange(TimeRange.yesterday());
+        today.setText(todayCount > 0 ? "Today " + todayCount : "Today");
+        yesterday.setText(yesterdayCount > 0 ? "Yesterday " + yesterdayCount : "Yesterday");
+    }
+
+    // Pinned items sit above the history in the order they were pinned. The most used
+    // view ranks pinned items along with the rest instead.
+    private void refreshPinned() {
+        pinnedSection.getChildren().clear();
+        if (VIEW_MOST_USED.equals(view)) {
+            return;
+        }
+        List<ClipboardItem> pinnedItems = pinnedResults();
+        if (pinnedItems.isEmpty()) {
+            return;
+        }
+        javafx.scene.control.Label title = new javafx.scene.control.Label("Pinned");
+        title.getStyleClass().add("section-label");
+        pinnedSection.getChildren().add(title);
+        for (ClipboardItem item : pinnedItems) {
+            pinnedSection.getChildren().add(createItemBox(item, true));
+        }
+    }
+
+    // Empty in the most used view, which ranks pinned items along with the rest
+    private List<ClipboardItem> pinnedResults() {
+        if (VIEW_MOST_USED.equals(view)) {
+            return List.of();
+        }
+        return isFiltering()
+                ? clipboardManager.filterPinned(activeCategories, searchQuery, timeRange()) : clipboardManager.getPinnedItems();
+    }
+
+    // The history as the current view, search and filters list it. Most used is a single short list.
+    private List<ClipboardItem> historyResults(int offset, int limit) {
+        TimeRange range = timeRange();
+        if (VIEW_MOST_USED.equals(view)) {
+            return offset == 0 ? clipboardManager.mostUsed(activeCategories, searchQuery, range, MOST_USED_COUNT) : List.of();
+        } else if (VIEW_FRECENCY.equals(view)) {
+            return clipboardManager.filterByFrecency(activeCategories, searchQuery, range, offset, limit);
+        } else if (isFiltering()) {
+            return clipboardManager.filter(activeCategories, searchQuery, range, offset, limit);
+        }
+        return clipboardManager.page(offset, limit);
+    }
+
+    // Rows are built a page at a time as the list is scrolled towards the end
+    private void loadNextPage() {
+        boolean mostUsed = VIEW_MOST_USED.equals(view);
+        List<ClipboardItem> page = historyResults(loadedCount, PAGE_SIZE);
+        for (ClipboardItem item : page) {
+            addHistoryRow(item, mostUsed && clipboardManager.isPinned(item));
+        }
+        loadedCount += page.size();
+        hasMorePages = !mostUsed && page.size() == PAGE_SIZE;
+    }
+
+    // Near-duplicates of an item already shown fold into its row instead of getting rows of
+    // their own, whichever page they turn up on
+    private void addHistoryRow(ClipboardItem item, boolean isPinned) {
+        String group = clipboardManager.nearDuplicateGroup(item.getId());
+        DuplicateGroup shown = shownGroups.get(group);
+        if (shown != null) {
+            shown.addMember(item, isPinned);
+            return;
+        }
+        HBox row = createItemBox(item, isPinned);
+        shownGroups.put(group, new DuplicateGroup(group, row));
+        historySection.getChildren().add(row);
+    }
+
+    // The newest row of a group with a toggle for the rest, whose rows are only built when opened
+    private class DuplicateGroup {
+        private final String group;
+        private final HBox head;
+        private final List<ClipboardItem> members = new ArrayList<>();
+        private final List<Boolean> membersPinned = new ArrayList<>();
+        private javafx.scene.control.Button toggle;
+        private VBox memberRows;
+
+        DuplicateGroup(String group, HBox head) {
+            this.group = group;
+            this.head = head;
+        }
+
+        void addMember(ClipboardItem item, boolean isPinned) {
+            members.add(item);
+            membersPinned.add(isPinned);
+            if (toggle == null) {
+                toggle = new javafx.scene.control.Button();
+                toggle.getStyleClass().add("group-toggle");
+                toggle.setOnAction(e -> {
+                    if (!expandedGroups.remove(group)) {
+                        expandedGroups.add(group);
+                    }
+                    update();
+                });
+                memberRows = new VBox(8);
+                memberRows.getStyleClass().add("duplicate-members");
+                VBox wrapper = new VBox(6);
+                historySection.getChildren().set(historySection.getChildren().indexOf(head), wrapper);
+                wrapper.getChildren().addAll(head, toggle, memberRows);
+            }
+            update();
+        }
+
+        private void update() {
+            boolean expanded = expandedGroups.contains(group);
+            toggle.setText((expanded ? "Hide " : "Show ") + members.size() + " similar");
+            if (expanded) {
+                for (int i = memberRows.getChildren().size(); i < members.size(); i++) {
+                    memberRows.getChildren().add(createItemBox(members.get(i), membersPinned.get(i)));
+                }
+            }
+            memberRows.setVisible(expanded);
+            memberRows.setManaged(expanded);
+        }
+
+        boolean hasMembers() {
+            return !members.isEmpty();
+        }
+
+        boolean touches(Set<String> ids) {
+            if (ids.contains(idOf(head))) {
+                return true;
+            }
+            for (ClipboardItem member : members) {
+                if (ids.contains(member.getId())) {
+                    return true;
+                }
+            }
+            return false;
         }
     }
 
     private void updateCurrentClipboard() {
+        // While our own copy is on the clipboard the item is known without reading it back,
+        // and items copied together match no single row
+        currentClipboardId = null;
         try {
             java.awt.datatransfer.Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+            if (LazyTransferable.ownsClipboard(clipboard)) {
+                currentClipboardId = LazyTransferable.currentItemId();
+                currentClipboardText = "";
+                return;
+            }
             if (clipboard.isDataFlavorAvailable(DataFlavor.stringFlavor)) {
                 currentClipboardText = (String) clipboard.getData(DataFlavor.stringFlavor);
             }
@@ -246,23 +701,19 @@ private HBox createFooter() {
         }
     }
 
-    private HBox createItemBox(ClipboardItem item) {
+    private HBox createItemBox(ClipboardItem item, boolean isPinned) {
         HBox box = new HBox(12);
         box.setPadding(new javafx.geometry.Insets(12));
         box.setAlignment(Pos.CENTER_LEFT);
         
-        boolean isCurrentClipboard = item.getText().equals(currentClipboardText);
-        
-        String baseStyle = "-fx-background-color: rgba(30, 30, 40, 0.6); " +
-                          "-fx-background-radius: 8px; " +
-                          "-fx-border-radius: 8px; " +
-                          "-fx-border-width: 2px;";
+        boolean isCurrentClipboard = item.getId().equals(currentClipboardId) || item.getText().equals(currentClipboardText);
         
-        if (isCurrentClipboard) {
-            box.setStyle(baseStyle + "-fx-border-color: #4CAF50;"); // Green border for current clipboard
-        } else {
-            box.setStyle(baseStyle + "-fx-border-color: rgba(196, 181, 224, 0.2);");
-        }
+        box.getStyleClass().add("clip-item");
+        box.pseudoClassStateChanged(CURRENT, isCurrentClipboard); // Green border for current clipboard
+        box.pseudoClassStateChanged(PINNED, isPinned);
+        box.pseudoClassStateChanged(SELECTED, selection.containsKey(item.getId()));
+        box.setUserData(item);
+        box.setOnMouseClicked(e -> selectRow(item, e.isShortcutDown(), e.isShiftDown()));
 
         String preview = item.getText();
         if (preview.length() > 80) {
@@ -271,7 +722,7 @@ private HBox createFooter() {
         preview = preview.replace("\n", " ").replace("\r", " ");
         
         javafx.scene.control.Label textLabel = new javafx.scene.control.Label(preview);
-        textLabel.setStyle("-fx-text-fill: #E8E8E8; -fx-font-size: 13px;");
+        textLabel.getStyleClass().add("clip-text");
         textLabel.setWrapText(true);
         textLabel.setMaxWidth(Double.MAX_VALUE);
         
@@ -280,52 +731,271 @@ private HBox createFooter() {
         HBox.setHgrow(textLabel, Priority.ALWAYS);
         
         javafx.scene.control.Button copyBtn = new javafx.scene.control.Button("C");
-        copyBtn.setStyle(getSmallButtonStyle());
+        copyBtn.getStyleClass().add("small-button");
         copyBtn.setTooltip(new Tooltip("Copy"));
         copyBtn.setOnAction(e -> {
-            copyToClipboard(item.getText());
+            copyToClipboard(item);
             showToast("Copied to clipboard!");
             refreshItems(); // Update to show new current item
         });
         
         javafx.scene.control.Button deleteBtn = new javafx.scene.control.Button("D");
-        deleteBtn.setStyle(getSmallButtonStyle());
+        deleteBtn.getStyleClass().add("small-button");
         deleteBtn.setTooltip(new Tooltip("Delete"));
         deleteBtn.setOnAction(e -> {
             clipboardManager.removeItem(item);
-            refreshItems();
+            removeRows(List.of(item.getId()));
         });
         
-        HBox buttonBox = new HBox(8, copyBtn, deleteBtn);
-        buttonBox.setAlignment(Pos.CENTER_RIGHT);
-        
-        box.getChildren().addAll(textLabel, spacer, buttonBox);
-        
-        final String finalBaseStyle = baseStyle;
-        box.setOnMouseEntered(e -> {
-            if (isCurrentClipboard) {
-                box.setStyle(finalBaseStyle + "-fx-border-color: #66BB6A; -fx-background-color: rgba(40, 40, 50, 0.8);");
+        javafx.scene.control.Button pinBtn = new javafx.scene.control.Button(isPinned ? "U" : "P");
+        pinBtn.getStyleClass().add("small-button");
+        pinBtn.setTooltip(new Tooltip(isPinned ? "Unpin" : "Pin"));
+        pinBtn.setOnAction(e -> {
+            if (isPinned) {
+                clipboardManager.unpin(item);
+                refreshItems();
             } else {
-                box.setStyle(finalBaseStyle + "-fx-border-color: rgba(196, 181, 224, 0.4); -fx-background-color: rgba(40, 40, 50, 0.8);");
+                pinItems(List.of(item));
             }
         });
         
-        box.setOnMouseExited(e -> {
-            if (isCurrentClipboard) {
-                box.setStyle(finalBaseStyle + "-fx-border-color: #4CAF50;");
-            } else {
-                box.setStyle(finalBaseStyle + "-fx-border-color: rgba(196, 181, 224, 0.2);");
-            }
-        });
+        HBox buttonBox = new HBox(8, pinBtn, copyBtn, deleteBtn);
+        if (clipboardManager.isReadOnly()) {
+            buttonBox.getChildren().removeAll(pinBtn, deleteBtn);
+        }
+        buttonBox.setAlignment(Pos.CENTER_RIGHT);
+        // Clicks on the buttons are not clicks on the row
+        buttonBox.addEventHandler(MouseEvent.MOUSE_CLICKED, MouseEvent::consume);
+        
+        box.getChildren().addAll(textLabel, spacer, buttonBox);
         
         return box;
     }
 
-    private void copyToClipboard(String text) {
+    private static String idOf(Node row) {
+        return ((ClipboardItem) row.getUserData()).getId();
+    }
+
+    // Rows in the order they are on screen, members of closed groups left out
+    private List<Node> shownRows() {
+        List<Node> rows = new ArrayList<>();
+        collectRows(itemsContainer, rows);
+        return rows;
+    }
+
+    private static void collectRows(Pane pane, List<Node> rows) {
+        for (Node child : pane.getChildren()) {
+            if (!child.isManaged()) {
+                continue;
+            }
+            if (child.getUserData() instanceof ClipboardItem) {
+                rows.add(child);
+            } else if (child instanceof Pane) {
+                collectRows((Pane) child, rows);
+            }
+        }
+    }
+
+    // Shortcut-click adds or drops a row, shift-click takes every row from the last one
+    // clicked, a plain click selects only this row or, when it was the only one, nothing
+    private void selectRow(ClipboardItem item, boolean toggle, boolean extend) {
+        List<Node> rows = extend && selectionAnchor != null ? shownRows() : List.of();
+        int from = -1;
+        int to = -1;
+        for (int i = 0; i < rows.size(); i++) {
+            String id = idOf(rows.get(i));
+            if (id.equals(selectionAnchor)) {
+                from = i;
+            }
+            if (id.equals(item.getId())) {
+                to = i;
+            }
+        }
+        if (from >= 0 && to >= 0) {
+            if (!toggle) {
+                selection.clear();
+            }
+            for (int i = Math.min(from, to); i <= Math.max(from, to); i++) {
+                ClipboardItem rowItem = (ClipboardItem) rows.get(i).getUserData();
+                selection.put(rowItem.getId(), rowItem);
+            }
+        } else if (toggle) {
+            if (selection.remove(item.getId()) == null) {
+                selection.put(item.getId(), item);
+            }
+            selectionAnchor = item.getId();
+        } else {
+            boolean onlyThis = selection.size() == 1 && selection.containsKey(item.getId());
+            selection.clear();
+            if (!onlyThis) {
+                selection.put(item.getId(), item);
+            }
+            selectionAnchor = item.getId();
+        }
+        updateSelection();
+    }
+
+    // Everything the search, filters and view list, with or without a row yet
+    private void selectAllResults() {
+        selection.clear();
+        for (ClipboardItem item : pinnedResults()) {
+            selection.put(item.getId(), item);
+        }
+        for (ClipboardItem item : historyResults(0, Math.max(1, clipboardManager.size()))) {
+            selection.put(item.getId(), item);
+        }
+        updateSelection();
+    }
+
+    private void clearSelection() {
+        if (selection.isEmpty()) {
+            return;
+        }
+        selection.clear();
+        selectionAnchor = null;
+        updateSelection();
+    }
+
+    private void updateSelection() {
+        for (Node row : shownRows()) {
+            row.pseudoClassStateChanged(SELECTED, selection.containsKey(idOf(row)));
+        }
+        updateSelectionBar();
+    }
+
+    private void updateSelectionBar() {
+        selectionLabel.setText(selection.size() + " selected");
+        selectionBar.setVisible(!selection.isEmpty());
+        selectionBar.setManaged(!selection.isEmpty());
+    }
+
+    // On-screen order, then whatever was selected without having a row, in the order picked
+    private List<String> selectedInOrder() {
+        List<String> ids = new ArrayList<>();
+        for (Node row : shownRows()) {
+            if (selection.containsKey(idOf(row))) {
+                ids.add(idOf(row));
+            }
+        }
+        Set<String> listed = new HashSet<>(ids);
+        for (String id : selection.keySet()) {
+            if (listed.add(id)) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private void deleteSelected() {
+        if (selection.isEmpty() || clipboardManager.isReadOnly()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(selection.keySet());
+        int removed = clipboardManager.removeItems(ids);
+        selectionAnchor = null;
+        removeRows(ids);
+        showToast(removed == 1 ? "Deleted 1 item" : "Deleted " + removed + " items");
+    }
+
+    private void pinSelected() {
+        if (selection.isEmpty() || clipboardManager.isReadOnly()) {
+            return;
+        }
+        int pinnedCount = pinItems(new ArrayList<>(selection.values()));
+        clearSelection();
+        showToast(pinnedCount == 1 ? "Pinned 1 item" : "Pinned " + pinnedCount + " items");
+    }
+
+    // The rows move from the history to the pinned section, the rest of the list stays put
+    private int pinItems(List<ClipboardItem> items) {
+        List<ClipboardItem> toPin = new ArrayList<>();
+        for (ClipboardItem item : items) {
+            if (!clipboardManager.isPinned(item)) {
+                toPin.add(item);
+            }
+        }
+        int pinnedCount = clipboardManager.pinItems(toPin);
+        if (pinnedCount == 0) {
+            return 0;
+        }
+        if (VIEW_MOST_USED.equals(view)) {
+            // Pinned items keep their place in this view and only change how they look
+            refreshItems();
+            return pinnedCount;
+        }
+        List<String> ids = new ArrayList<>();
+        for (ClipboardItem item : toPin) {
+            ids.add(item.getId());
+        }
+        removeRows(ids);
+        refreshPinned();
+        if (!pinnedSection.getChildren().isEmpty() && !itemsContainer.getChildren().contains(pinnedSection)) {
+            itemsContainer.getChildren().add(0, pinnedSection);
+        }
+        return pinnedCount;
+    }
+
+    private void copySelectedJoined(String separator) {
+        if (selection.isEmpty()) {
+            return;
+        }
+        List<String> ids = selectedInOrder();
+        LazyTransferable.copyJoined(clipboardManager, ids, separator);
+        currentClipboardId = null;
+        currentClipboardText = "";
+        for (Node row : shownRows()) {
+            row.pseudoClassStateChanged(CURRENT, false);
+        }
+        showToast(ids.size() == 1 ? "Copied 1 item" : "Copied " + ids.size() + " items joined");
+    }
+
+    // Takes the rows of items that left the history or the pins off the screen instead of
+    // building the list again. A near-duplicate group that loses its head or a member is
+    // regrouped by a full refresh.
+    private void removeRows(Collection<String> ids) {
+        Set<String> gone = new HashSet<>(ids);
+        selection.keySet().removeAll(gone);
+        for (Iterator<DuplicateGroup> groups = shownGroups.values().iterator(); groups.hasNext(); ) {
+            DuplicateGroup group = groups.next();
+            if (!group.touches(gone)) {
+                continue;
+            }
+            if (group.hasMembers()) {
+                refreshItems();
+                return;
+            }
+            groups.remove();
+        }
+        for (Node row : shownRows()) {
+            if (gone.contains(idOf(row))) {
+                Pane section = (Pane) row.getParent();
+                section.getChildren().remove(row);
+                if (section == historySection) {
+                    loadedCount--;
+                }
+            }
+        }
+        // Only the title left
+        if (pinnedSection.getChildren().size() == 1) {
+            pinnedSection.getChildren().clear();
+            itemsContainer.getChildren().remove(pinnedSection);
+        }
+        if (historySection.getChildren().isEmpty() && pinnedSection.getChildren().isEmpty()) {
+            // Shows the next page or the empty list
+            refreshItems();
+            return;
+        }
+        if (hasMorePages && historySection.getChildren().size() < PAGE_SIZE) {
+            loadNextPage();
+        }
+        updateFilterChips();
+        updateTimelineChips();
+        updateSelection();
+    }
+
+    private void copyToClipboard(ClipboardItem item) {
         try {
-            StringSelection selection = new StringSelection(text);
-            Toolkit.getDefaultToolkit().getSystemClipboard().setContents(selection, selection);
-            currentClipboardText = text;
+            currentClipboardId = LazyTransferable.copy(clipboardManager, item);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -338,39 +1008,16 @@ private HBox createFooter() {
         alert.setHeaderText("Clear all clipboard history?");
         alert.setContentText("This action cannot be undone.");
         
-        // Style the alert dialog with dark theme
+        // Style the alert dialog with the current theme
         DialogPane dialogPane = alert.getDialogPane();
-        dialogPane.setStyle("-fx-background-color: rgba(15, 15, 20, 0.98); " +
-                           "-fx-border-color: #C4B5E0; " +
-                           "-fx-border-width: 2px; " +
-                           "-fx-border-radius: 10px; " +
-                           "-fx-background-radius: 10px;");
-        
-        // Style header
-        javafx.scene.Node header = dialogPane.lookup(".header-panel");
-        if (header != null) {
-            header.setStyle("-fx-background-color: rgba(15, 15, 20, 0.95); -fx-background-radius: 10px 10px 0 0;");
-        }
-        
-        // Style content
-        dialogPane.lookup(".content.label").setStyle("-fx-text-fill: #E8E8E8; -fx-font-size: 13px;");
-        dialogPane.lookup(".header-panel .label").setStyle("-fx-text-fill: #C4B5E0; -fx-font-size: 16px; -fx-font-weight: bold;");
+        Themes.apply(dialogPane, settingsManager.getTheme());
+        dialogPane.getStyleClass().add("confirm-dialog");
         
         // Style buttons
         for (ButtonType buttonType : dialogPane.getButtonTypes()) {
             javafx.scene.control.Button button = (javafx.scene.control.Button) dialogPane.lookupButton(buttonType);
             if (button != null) {
-                if (buttonType == ButtonType.OK) {
-                    button.setStyle("-fx-background-color: rgba(244, 67, 54, 0.3); " +
-                                  "-fx-text-fill: #E8E8E8; " +
-                                  "-fx-background-radius: 6px; " +
-                                  "-fx-padding: 8px 16px; " +
-                                  "-fx-cursor: hand; " +
-                                  "-fx-border-color: rgba(244, 67, 54, 0.5); " +
-                                  "-fx-border-width: 1px;");
-                } else {
-                    button.setStyle(getButtonStyle());
-                }
+                button.getStyleClass().add(buttonType == ButtonType.OK ? "danger-button" : "modal-button");
             }
         }
         
@@ -385,14 +1032,7 @@ private HBox createFooter() {
 
     private void showToast(String message) {
         javafx.scene.control.Label toast = new javafx.scene.control.Label(message);
-        toast.setStyle("-fx-background-color: rgba(15, 15, 20, 0.95); " +
-                      "-fx-text-fill: #C4B5E0; " +
-                      "-fx-padding: 12px 20px; " +
-                      "-fx-background-radius: 8px; " +
-                      "-fx-font-size: 13px; " +
-                      "-fx-border-color: #C4B5E0; " +
-                      "-fx-border-width: 1px; " +
-                      "-fx-border-radius: 8px;");
+        toast.getStyleClass().add("toast");
         
         toastContainer.getChildren().clear();
         toastContainer.getChildren().add(toast);
@@ -414,11 +1054,19 @@ private HBox createFooter() {
     }
 
     private void closeApplication() {
+        if (onExitHandler != null) {
+            onExitHandler.run();
+            return;
+        }
         clipboardManager.saveToFile();
         Platform.exit();
         System.exit(0);
     }
 
+    public void setOnExit(Runnable handler) {
+        this.onExitHandler = handler;
+    }
+
     private void setupEventHandlers() {
         root.setOnMouseEntered(e -> {
             if (autoCloseTimer != null) {
@@ -566,7 +1214,15 @@ private HBox createFooter() {
 
     
     public void showNearMenu(FloatingMenu menu) {
+    if (idleTimer != null) {
+        idleTimer.stop();
+    }
+    long rebuildStart = System.nanoTime();
     refreshItems();
+    if (released) {
+        Metrics.set("idle.rebuildNanos", System.nanoTime() - rebuildStart);
+        released = false;
+    }
 
     // Ensure stage has valid dimensions before showing
     if (stage.getWidth() == 0 || stage.getHeight() == 0) {
@@ -599,6 +1255,7 @@ private HBox createFooter() {
         stage.setX(modalX);
         stage.setY(modalY);
         startAutoCloseTimer();
+        performanceMode.sampleFrameTimes();
 
         if (floatingMenu != null) {
             floatingMenu.setModalOpen(true);
@@ -640,6 +1297,7 @@ private HBox createFooter() {
         if (autoCloseTimer != null) {
             autoCloseTimer.stop();
         }
+        startIdleTimer();
         // Notify floating menu that modal is closed
         if (floatingMenu != null) {
             floatingMenu.setModalOpen(false);
@@ -650,42 +1308,49 @@ private HBox createFooter() {
         return stage.isShowing();
     }
 
-    private String getGlassmorphicStyle() {
-        return "-fx-background-color: rgba(10, 10, 15, 0.85); " +
-               "-fx-background-radius: 12px; " +
-               "-fx-border-color: rgba(196, 181, 224, 0.3); " +
-               "-fx-border-radius: 12px; " +
-               "-fx-border-width: 1px; " +
-               "-fx-background-insets: 0;";
-    }
-
-    private String getButtonStyle() {
-        return "-fx-background-color: rgba(196, 181, 224, 0.2); " +
-               "-fx-text-fill: #C4B5E0; " +
-               "-fx-background-radius: 6px; " +
-               "-fx-padding: 8px 16px; " +
-               "-fx-cursor: hand; " +
-               "-fx-font-size: 12px; " +
-               "-fx-border-color: rgba(196, 181, 224, 0.3); " +
-               "-fx-border-width: 1px;";
-    }
-
-    private String getSmallButtonStyle() {
-        return "-fx-background-color: rgba(196, 181, 224, 0.15); " +
-               "-fx-text-fill: #C4B5E0; " +
-               "-fx-background-radius: 4px; " +
-               "-fx-padding: 6px 10px; " +
-               "-fx-cursor: hand; " +
-               "-fx-font-size: 11px; " +
-               "-fx-font-weight: bold; " +
-               "-fx-min-width: 30px; " +
-               "-fx-border-color: rgba(196, 181, 224, 0.2); " +
-               "-fx-border-width: 1px;";
-    }
-
-    private String getSliderStyle() {
-        return "-fx-background-color: rgba(30, 30, 40, 0.8); " +
-               "-fx-background-radius: 3px; " +
-               "-fx-control-inner-background: rgba(196, 181, 224, 0.3);";
+    private void startIdleTimer() {
+        int minutes = settingsManager.getIdleReleaseMinutes();
+        if (minutes <= 0 || released) {
+            return;
+        }
+        if (idleTimer == null) {
+            idleTimer = new PauseTransition();
+            idleTimer.setOnFinished(e -> releaseWhileHidden());
+        }
+        idleTimer.setDuration(Duration.minutes(minutes));
+        idleTimer.playFromStart();
+    }
+
+    // After a while hidden the rows, with their tooltips and effects, and the store's cache
+    // beyond the first page are dropped. showNearMenu builds the first page again.
+    private void releaseWhileHidden() {
+        if (stage.isShowing()) {
+            return;
+        }
+        long heapBefore = MemoryStats.heapUsedBytes();
+        long residentBefore = MemoryStats.residentBytes();
+        itemsContainer.getChildren().clear();
+        pinnedSection.getChildren().clear();
+        historySection.getChildren().clear();
+        shownGroups.clear();
+        selection.clear();
+        selectionAnchor = null;
+        updateSelectionBar();
+        loadedCount = 0;
+        hasMorePages = false;
+        clipboardManager.trimCaches(PAGE_SIZE);
+        released = true;
+        Metrics.increment("idle.releases");
+        Metrics.set("idle.heapBeforeBytes", heapBefore);
+        Metrics.set("idle.residentBeforeBytes", residentBefore);
+        // The JVM collects when it wants to, what was freed shows up after that
+        MemoryStats.afterNextGc(after -> {
+            Metrics.set("idle.heapAfterBytes", after.heapUsedBytes());
+            Metrics.set("idle.residentAfterBytes", after.residentBytes());
+        });
+    }
+
+    public Scene getScene() {
+        return stage.getScene();
     }
 }
\ No newline at end of file
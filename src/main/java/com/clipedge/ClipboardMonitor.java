@@ -0,0 +1,78 @@
+package com.clipedge;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Polls a clipboard source and hands every new text to the capture pipeline, recording
+// it in a trace first when one is being taken
+public class ClipboardMonitor {
+    public static final long DEFAULT_POLL_MS = 500;
+
+    private final ClipboardSource source;
+    private final CapturePipeline capturePipeline;
+    private final long pollMillis;
+    private final TraceRecorder recorder;
+    private final AtomicLong captured = new AtomicLong();
+    private volatile boolean running = false;
+    private Thread thread;
+    private String lastClipboard = "";
+
+    // recorder may be null
+    public ClipboardMonitor(ClipboardSource source, CapturePipeline capturePipeline, long pollMillis,
+                            TraceRecorder recorder) {
+        this.source = source;
+        this.capturePipeline = capturePipeline;
+        this.pollMillis = pollMillis;
+        this.recorder = recorder;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "clipboard-monitor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        if (recorder != null) {
+            recorder.close();
+        }
+    }
+
+    // Texts handed to the pipeline so far
+    public long getCaptured() {
+        return captured.get();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                poll();
+            } catch (Exception e) {
+                // Ignore clipboard access errors
+            }
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void poll() throws Exception {
+        String data = source.readText();
+        if (data == null || data.isEmpty() || data.equals(lastClipboard)) {
+            return;
+        }
+        lastClipboard = data;
+        boolean concealed = source.isConcealed();
+        if (recorder != null) {
+            recorder.record(data, concealed);
+        }
+        capturePipeline.submit(data, concealed);
+        captured.incrementAndGet();
+    }
+}
@@ -0,0 +1,11 @@
+package com.clipedge;
+
+// Where the monitor reads captures from: the system clipboard, or a stand-in when a
+// recorded trace is replayed
+public interface ClipboardSource {
+    // The current text, null when there is none or it is not to be read
+    String readText() throws Exception;
+
+    // Whether the app that put the current content there flagged it as a secret
+    boolean isConcealed() throws Exception;
+}
@@ -0,0 +1,234 @@
+package com.clipedge;
+
+// Sorts captures into the categories the history can be filtered by. An item can be in
+// several at once, a multi-line JSON document say, so the result is a bitmask.
+public final class ContentClassifier {
+    public enum Category {
+        URL("URLs"), CODE("Code"), JSON("JSON"), EMAIL("Emails"), NUMBER("Numbers"), MULTILINE("Multi-line");
+
+        private final String label;
+
+        Category(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public int mask() {
+            return 1 << ordinal();
+        }
+    }
+
+    // What kind of content a payload is shows at its start, so only that much is scanned
+    private static final int SCAN_WINDOW = 64 * 1024;
+    private static final int MAX_JSON_DEPTH = 256;
+    private static final String[] URL_PREFIXES = {"http://", "https://", "ftp://", "file://", "www."};
+    // Only compared at the first non-blank character of a line
+    private static final String[] CODE_KEYWORDS = {
+            "import ", "package ", "public ", "private ", "protected ", "class ", "def ", "function ",
+            "const ", "let ", "var ", "return ", "#include", "#define", "if (", "for (", "while (",
+            "fn ", "func ", "SELECT ", "select ", "@Override", "//", "/*"
+    };
+
+    private ContentClassifier() {
+    }
+
+    public static int classify(CharSequence text) {
+        int length = text.length();
+        int start = 0;
+        while (start < length && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        int last = length - 1;
+        while (last >= start && Character.isWhitespace(text.charAt(last))) {
+            last--;
+        }
+        if (start > last) {
+            return 0;
+        }
+        int end = Math.min(last + 1, start + SCAN_WINDOW);
+        boolean complete = end == last + 1;
+
+        boolean whitespace = false;
+        int newlines = 0;
+        int at = -1;
+        int ats = 0;
+        boolean dotAfterAt = false;
+        boolean numeric = true;
+        boolean digits = false;
+        boolean parens = false;
+
+        // Code shows up as lines ending in ; { or } and lines opening with a keyword
+        int codeLines = 0;
+        int keywordLines = 0;
+        int lineLast = -1;
+        boolean lineStart = true;
+
+        char first = text.charAt(start);
+        boolean json = first == '{' || first == '[';
+        char[] open = json ? new char[MAX_JSON_DEPTH] : null;
+        int depth = 0;
+        int closedAt = -1;
+        boolean inString = false;
+        boolean escaped = false;
+        boolean colon = false;
+
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                newlines++;
+                if (lineLast >= 0 && isCodeLineEnd(text.charAt(lineLast))) {
+                    codeLines++;
+                }
+                lineLast = -1;
+                lineStart = true;
+            } else if (!Character.isWhitespace(c)) {
+                if (lineStart) {
+                    lineStart = false;
+                    if (startsWithKeyword(text, i, end)) {
+                        keywordLines++;
+                    }
+                }
+                lineLast = i;
+            }
+
+            if (Character.isWhitespace(c)) {
+                whitespace = true;
+            }
+            if (c == '@') {
+                ats++;
+                at = i;
+                dotAfterAt = false;
+            } else if (c == '.' && at >= 0 && i > at + 1) {
+                dotAfterAt = true;
+            }
+            if (c >= '0' && c <= '9') {
+                digits = true;
+            } else if (c != '.' && c != ',' && c != '-' && c != '+' && c != ' ') {
+                numeric = false;
+            }
+            if (c == '(') {
+                parens = true;
+            }
+
+            if (json && closedAt < 0) {
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{' || c == '[') {
+                    if (depth == MAX_JSON_DEPTH) {
+                        json = false;
+                    } else {
+                        open[depth++] = c;
+                    }
+                } else if (c == '}' || c == ']') {
+                    if (depth == 0 || open[depth - 1] != (c == '}' ? '{' : '[')) {
+                        json = false;
+                    } else if (--depth == 0) {
+                        closedAt = i;
+                    }
+                } else if (c == ':') {
+                    colon = true;
+                }
+            } else if (json && !Character.isWhitespace(c)) {
+                // Something follows the closing bracket
+                json = false;
+            }
+        }
+        if (lineLast >= 0 && isCodeLineEnd(text.charAt(lineLast))) {
+            codeLines++;
+        }
+
+        int categories = 0;
+        if (newlines > 0) {
+            categories |= Category.MULTILINE.mask();
+        }
+        if (json) {
+            // A payload too large to scan whole counts when it closes the way it opened
+            boolean closed = complete ? closedAt == last : text.charAt(last) == (first == '{' ? '}' : ']');
+            json = closed && startsLikeJson(text, first, start + 1, end) && (first == '[' || colon || closedAt == start + 1);
+        }
+        if (json) {
+            categories |= Category.JSON.mask();
+        } else if (codeLines >= 2 || keywordLines >= 2 || (codeLines == 1 && (keywordLines == 1 || parens))) {
+            categories |= Category.CODE.mask();
+        }
+        if (!whitespace) {
+            if (hasUrlPrefix(text, start)) {
+                categories |= Category.URL.mask();
+            } else if (ats == 1 && at > start && dotAfterAt && text.charAt(last) != '.') {
+                categories |= Category.EMAIL.mask();
+            }
+        }
+        if (numeric && digits && complete) {
+            categories |= Category.NUMBER.mask();
+        }
+        return categories;
+    }
+
+    public static boolean isIn(int categories, Category category) {
+        return (categories & category.mask()) != 0;
+    }
+
+    // Objects open with a quoted key and arrays with a value, which keeps code blocks and
+    // bracketed prose out
+    private static boolean startsLikeJson(CharSequence text, char first, int from, int end) {
+        for (int i = from; i < end; i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                if (first == '{') {
+                    return c == '"' || c == '}';
+                }
+                return "{[\"-]0123456789tfn".indexOf(c) >= 0;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isCodeLineEnd(char c) {
+        return c == ';' || c == '{' || c == '}';
+    }
+
+    private static boolean startsWithKeyword(CharSequence text, int index, int end) {
+        for (String keyword : CODE_KEYWORDS) {
+            if (regionMatches(text, index, end, keyword, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasUrlPrefix(CharSequence text, int index) {
+        for (String prefix : URL_PREFIXES) {
+            if (regionMatches(text, index, text.length(), prefix, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(CharSequence text, int index, int end, String prefix, boolean ignoreCase) {
+        if (end - index < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = text.charAt(index + i);
+            if (ignoreCase) {
+                c = Character.toLowerCase(c);
+            }
+            if (c != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
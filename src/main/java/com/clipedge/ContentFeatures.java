@@ -0,0 +1,25 @@
+package com.clipedge;
+
+// What is worked out from a capture's text once, off the UI thread, before it is stored
+public final class ContentFeatures {
+    private final int categories;
+    private final long fingerprint;
+
+    public ContentFeatures(int categories, long fingerprint) {
+        this.categories = categories;
+        this.fingerprint = fingerprint;
+    }
+
+    public static ContentFeatures of(CharSequence text) {
+        return new ContentFeatures(ContentClassifier.classify(text), SimHash.fingerprint(text));
+    }
+
+    public int getCategories() {
+        return categories;
+    }
+
+    // SimHash of the text, 0 when it is too short to have one
+    public long getFingerprint() {
+        return fingerprint;
+    }
+}
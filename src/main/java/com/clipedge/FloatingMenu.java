@@ -1,11 +1,9 @@
 package com.clipedge;
 
 import javafx.animation.*;
+import javafx.css.PseudoClass;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Scene;
-import javafx.scene.effect.DropShadow;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
@@ -27,6 +25,9 @@ public class FloatingMenu {
     private Circle borderCircle;
     private StackPane logoContainer;
     private SettingsManager settingsManager;
+    private PerformanceMode performanceMode;
+    private ScaleTransition hoverTransition;
+    private SequentialTransition pulseAnimation;
     private Runnable onClickHandler;
     private Runnable onCloseHandler;
     private double xOffset = 0;
@@ -36,9 +37,11 @@ public class FloatingMenu {
     private static final double MENU_SIZE = 60;
     private static final double IDLE_OPACITY = 0.7;
     private static final double HOVER_OPACITY = 1.0;
+    private static final PseudoClass ACTIVE = PseudoClass.getPseudoClass("active");
 
-    public FloatingMenu(SettingsManager settingsManager) {
+    public FloatingMenu(SettingsManager settingsManager, PerformanceMode performanceMode) {
         this.settingsManager = settingsManager;
+        this.performanceMode = performanceMode;
         initUI();
     }
 
@@ -48,16 +51,14 @@ public class FloatingMenu {
         stage.setAlwaysOnTop(true);
 
         root = new StackPane();
-        root.setStyle("-fx-background-color: transparent;");
+        root.getStyleClass().add("menu-root");
 
         backgroundCircle = new Circle(MENU_SIZE / 2);
-        backgroundCircle.setFill(Color.rgb(10, 10, 15, 0.9));
-        backgroundCircle.setEffect(new DropShadow(20, Color.rgb(196, 181, 224, 0.3)));
+        backgroundCircle.getStyleClass().add("menu-background");
+        performanceMode.cacheEffect(backgroundCircle);
 
         borderCircle = new Circle(MENU_SIZE / 2);
-        borderCircle.setFill(Color.TRANSPARENT);
-        borderCircle.setStroke(Color.rgb(196, 181, 224, 0.4));
-        borderCircle.setStrokeWidth(2);
+        borderCircle.getStyleClass().add("menu-border");
 
         // Create stylized E logo
         logoContainer = createStylizedE();
@@ -67,6 +68,9 @@ public class FloatingMenu {
 
         Scene scene = new Scene(root, MENU_SIZE, MENU_SIZE);
         scene.setFill(Color.TRANSPARENT);
+        Themes.apply(scene, settingsManager.getTheme());
+        settingsManager.addThemeListener(theme -> Themes.apply(scene, theme));
+        performanceMode.register(scene);
         stage.setScene(scene);
 
         Rectangle2D screenBounds = Screen.getPrimary().getVisualBounds();
@@ -74,19 +78,47 @@ public class FloatingMenu {
         stage.setY(screenBounds.getHeight() / 2 - MENU_SIZE / 2);
         stage.setOpacity(IDLE_OPACITY);
 
+        createAnimations();
         setupEventHandlers();
     }
 
+    // Transitions are built once and replayed, rather than allocated on every event
+    private void createAnimations() {
+        hoverTransition = new ScaleTransition(Duration.millis(200), root);
+
+        ScaleTransition pressIn = new ScaleTransition(Duration.millis(100), root);
+        pressIn.setToX(0.9);
+        pressIn.setToY(0.9);
+
+        ScaleTransition pressOut = new ScaleTransition(Duration.millis(100), root);
+        pressOut.setToX(1.0);
+        pressOut.setToY(1.0);
+
+        pulseAnimation = new SequentialTransition(pressIn, pressOut);
+    }
+
+    private void scaleTo(double scale) {
+        hoverTransition.stop();
+        if (performanceMode.isLowPower()) {
+            root.setScaleX(scale);
+            root.setScaleY(scale);
+            return;
+        }
+        hoverTransition.setToX(scale);
+        hoverTransition.setToY(scale);
+        hoverTransition.playFromStart();
+    }
+
     private StackPane createStylizedE() {
         StackPane container = new StackPane();
         Text eText = new Text("E");
 
-        // Use a clean, elegant font. If Playwrite ES is not installed locally,
-        // fallback will still look refined.
-        eText.setFont(Font.font("Playwrite ES", FontWeight.NORMAL, FontPosture.REGULAR, 28));
-        eText.setFill(Color.rgb(196, 181, 224, 0.9));
-
-        eText.setEffect(new DropShadow(10, Color.rgb(196, 181, 224, 0.4)));
+        // Use the bundled Playwrite ES font. If it can't be loaded, fall back to an
+        // installed copy or a refined system font.
+        Font bundled = ResourceCache.getFont(ResourceCache.MENU_FONT, ResourceCache.MENU_FONT_SIZE);
+        eText.setFont(bundled != null ? bundled
+                : Font.font("Playwrite ES", FontWeight.NORMAL, FontPosture.REGULAR, ResourceCache.MENU_FONT_SIZE));
+        eText.getStyleClass().add("menu-logo");
 
         container.getChildren().add(eText);
         return container;
@@ -95,25 +127,17 @@ public class FloatingMenu {
     private void setupEventHandlers() {
         root.setOnMouseEntered(e -> {
             stage.setOpacity(HOVER_OPACITY);
-            ScaleTransition st = new ScaleTransition(Duration.millis(200), root);
-            st.setToX(1.15);
-            st.setToY(1.15);
-            st.play();
+            scaleTo(1.15);
 
-            borderCircle.setStroke(Color.rgb(196, 181, 224, 0.8));
-            borderCircle.setStrokeWidth(3);
+            borderCircle.pseudoClassStateChanged(ACTIVE, true);
         });
 
         root.setOnMouseExited(e -> {
             if (!isDragging) {
                 stage.setOpacity(IDLE_OPACITY);
-                ScaleTransition st = new ScaleTransition(Duration.millis(200), root);
-                st.setToX(1.0);
-                st.setToY(1.0);
-                st.play();
+                scaleTo(1.0);
 
-                borderCircle.setStroke(Color.rgb(196, 181, 224, 0.4));
-                borderCircle.setStrokeWidth(2);
+                borderCircle.pseudoClassStateChanged(ACTIVE, false);
             }
         });
 
@@ -185,16 +209,19 @@ public class FloatingMenu {
     }
 
     public void playAnimation() {
-        ScaleTransition st1 = new ScaleTransition(Duration.millis(100), root);
-        st1.setToX(0.9);
-        st1.setToY(0.9);
-
-        ScaleTransition st2 = new ScaleTransition(Duration.millis(100), root);
-        st2.setToX(1.0);
-        st2.setToY(1.0);
+        // A pulse that is still running absorbs new requests
+        if (pulseAnimation.getStatus() == Animation.Status.RUNNING) {
+            return;
+        }
+        hoverTransition.stop();
+        pulseAnimation.playFromStart();
+    }
 
-        SequentialTransition sequence = new SequentialTransition(st1, st2);
-        sequence.play();
+    // Capture pulses are rate limited while clips arrive in a burst
+    public void playCaptureAnimation() {
+        if (performanceMode.shouldAnimateCapture()) {
+            playAnimation();
+        }
     }
 
     public void setOnClick(Runnable handler) {
@@ -227,17 +254,14 @@ public class FloatingMenu {
         // Use Region objects with fully rounded ends (circular)
         Region line1 = new Region();
         line1.setPrefSize(20, 3);
-        line1.setStyle("-fx-background-color: rgba(196, 181, 224, 0.9); -fx-background-radius: 1.5;");
+        line1.getStyleClass().add("menu-x-line");
         line1.setRotate(45);
 
         Region line2 = new Region();
         line2.setPrefSize(20, 3);
-        line2.setStyle("-fx-background-color: rgba(196, 181, 224, 0.9); -fx-background-radius: 1.5;");
+        line2.getStyleClass().add("menu-x-line");
         line2.setRotate(-45);
 
-        line1.setEffect(new DropShadow(10, Color.rgb(196, 181, 224, 0.4)));
-        line2.setEffect(new DropShadow(10, Color.rgb(196, 181, 224, 0.4)));
-
         xPane.getChildren().addAll(line1, line2);
 
         return xPane;
@@ -247,6 +271,10 @@ public class FloatingMenu {
         stage.show();
     }
 
+    public Scene getScene() {
+        return stage.getScene();
+    }
+
     public double getX() {
         return stage.getX();
     }
@@ -0,0 +1,167 @@
+package com.clipedge;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+// History commands of the control socket. Lists fix the ids they show up front and load
+// the items one at a time, so captures arriving meanwhile neither shift nor repeat rows,
+// and item text goes out in chunks. Neither side ever holds more than a page of output.
+final class HistoryCommands {
+    private static final int DEFAULT_LIST_LIMIT = 20;
+    private static final int SEARCH_LIMIT = 100;
+    private static final int PAGE_SIZE = 50;
+    private static final int CHUNK_SIZE = 8192;
+    private static final int PREVIEW_LENGTH = 100;
+    private static final int MAX_PUSH_CHARS = 64 * 1024 * 1024;
+
+    private HistoryCommands() {
+    }
+
+    // Pushes go through the pipeline's screening like any capture. onChanged runs on the
+    // connection thread after a push changed the history.
+    static void register(IpcServer server, ClipboardManager clipboardManager, CapturePipeline pipeline,
+                         Runnable onChanged) {
+        server.register("list", (argument, in, out) -> {
+            int limit = argument.isBlank() ? DEFAULT_LIST_LIMIT : parseLimit(argument.trim());
+            List<String> ids = clipboardManager.snapshot().ids();
+            IpcServer.ok(out);
+            writeSummaries(out, clipboardManager, ids.subList(0, Math.min(limit, ids.size())));
+        });
+
+        server.register("get", (argument, in, out) -> {
+            InputStream text = clipboardManager.openText(argument.trim());
+            if (text == null) {
+                throw new IllegalArgumentException("no item with id " + argument.trim());
+            }
+            try (Reader reader = new InputStreamReader(text, StandardCharsets.UTF_8)) {
+                IpcServer.ok(out);
+                char[] buffer = new char[CHUNK_SIZE];
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+        });
+
+        // Items captured on the given days, one date for a single day or two for a range
+        server.register("range", (argument, in, out) -> {
+            String[] dates = argument.trim().split("\\s+");
+            if (argument.isBlank() || dates.length > 2) {
+                throw new IllegalArgumentException("range needs one or two dates");
+            }
+            LocalDate first = parseDate(dates[0]);
+            TimeRange range = TimeRange.days(first, dates.length == 2 ? parseDate(dates[1]) : first);
+            IpcServer.ok(out);
+            int offset = 0;
+            while (true) {
+                List<ClipboardItem> page = clipboardManager.range(range, offset, PAGE_SIZE);
+                for (ClipboardItem item : page) {
+                    writeSummary(out, item);
+                }
+                out.flush();
+                if (page.size() < PAGE_SIZE) {
+                    break;
+                }
+                offset += page.size();
+            }
+        });
+
+        server.register("search", (argument, in, out) -> {
+            if (argument.isBlank()) {
+                throw new IllegalArgumentException("search needs a query");
+            }
+            List<String> ids = clipboardManager.searchIds(argument, SEARCH_LIMIT);
+            IpcServer.ok(out);
+            writeSummaries(out, clipboardManager, ids);
+        });
+
+        server.register("push", (argument, in, out) -> {
+            String text = readBody(in);
+            if (text.isBlank()) {
+                throw new IllegalArgumentException("nothing to push");
+            }
+            ClipboardItem added = pipeline.storeNow(text);
+            if (added == null) {
+                throw new IllegalArgumentException("nothing was stored, the text is pinned already or held back as sensitive");
+            }
+            onChanged.run();
+            IpcServer.ok(out);
+            out.write(added.getId());
+            out.newLine();
+        });
+    }
+
+    // An item is a whole text, the one thing a push has to hold in full. The limit is
+    // checked before a chunk is kept, so an oversized push never gets past it.
+    private static String readBody(BufferedReader in) throws IOException {
+        StringBuilder body = new StringBuilder();
+        char[] buffer = new char[CHUNK_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (body.length() + read > MAX_PUSH_CHARS) {
+                throw new IllegalArgumentException("input is larger than " + MAX_PUSH_CHARS + " characters");
+            }
+            body.append(buffer, 0, read);
+        }
+        return body.toString();
+    }
+
+    // Items deleted since the ids were taken are left out
+    private static void writeSummaries(BufferedWriter out, ClipboardManager clipboardManager, List<String> ids)
+            throws IOException {
+        int written = 0;
+        for (String id : ids) {
+            ClipboardItem item = clipboardManager.findById(id);
+            if (item == null) {
+                continue;
+            }
+            writeSummary(out, item);
+            if (++written % PAGE_SIZE == 0) {
+                out.flush();
+            }
+        }
+    }
+
+    private static int parseLimit(String value) {
+        try {
+            int limit = Integer.parseInt(value);
+            if (limit > 0) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("invalid limit: " + value);
+    }
+
+    private static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("invalid date: " + value);
+        }
+    }
+
+    // id, timestamp and a one-line preview, separated by tabs
+    private static void writeSummary(BufferedWriter out, ClipboardItem item) throws IOException {
+        String text = item.getText();
+        int length = Math.min(text.length(), PREVIEW_LENGTH);
+        out.write(item.getId());
+        out.write('\t');
+        out.write(Timestamps.format(item.getTimestamp()));
+        out.write('\t');
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            out.write(Character.isISOControl(c) ? ' ' : c);
+        }
+        out.newLine();
+    }
+}
@@ -0,0 +1,12 @@
+package com.clipedge;
+
+import java.util.List;
+
+// Told about every change to the history (not the pins), so views can update what they
+// show instead of reloading it. Called with the manager's lock held, so implementations
+// should only record the change or hand it off to another thread.
+public interface HistoryListener {
+    // added is oldest first. reset means the history changed in ways not described here
+    // and should be read again.
+    void historyChanged(List<ClipboardItem> added, List<String> removedIds, boolean reset);
+}
@@ -0,0 +1,52 @@
+package com.clipedge;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Fixes the order of the history at one point in time. Items are only loaded when
+// iterated, and items deleted since the snapshot was taken are skipped.
+public class HistorySnapshot implements Iterable<ClipboardItem> {
+    private final HistoryStore store;
+    private final List<String> ids;
+
+    HistorySnapshot(HistoryStore store, List<String> ids) {
+        this.store = store;
+        this.ids = Collections.unmodifiableList(ids);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    public List<String> ids() {
+        return ids;
+    }
+
+    @Override
+    public Iterator<ClipboardItem> iterator() {
+        return new Iterator<>() {
+            private int index = 0;
+            private ClipboardItem next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && index < ids.size()) {
+                    next = store.findById(ids.get(index++));
+                }
+                return next != null;
+            }
+
+            @Override
+            public ClipboardItem next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ClipboardItem item = next;
+                next = null;
+                return item;
+            }
+        };
+    }
+}
@@ -0,0 +1,86 @@
+package com.clipedge;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Storage for clipboard history, ordered by recency with the newest item first
+public interface HistoryStore {
+    void append(ClipboardItem item);
+
+    boolean delete(String id);
+
+    void clear();
+
+    List<ClipboardItem> page(int offset, int limit);
+
+    // Ids of every item, newest first, without loading the items themselves
+    List<String> ids();
+
+    ClipboardItem findById(String id);
+
+    ClipboardItem findByText(String text);
+
+    // The item's text as UTF-8, or null when there is no such item. Stores that keep text
+    // on disk stream it from there instead of loading the whole item.
+    default InputStream openText(String id) throws IOException {
+        ClipboardItem item = findById(id);
+        return item != null ? new ByteArrayInputStream(item.getText().getBytes(StandardCharsets.UTF_8)) : null;
+    }
+
+    // How many items were captured at or after the given time, which is also the page offset
+    // of the newest item captured before it. Capture times never decrease towards the newest
+    // item, so this is a binary search over single-item pages.
+    default int countSince(long millis) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            List<ClipboardItem> item = page(middle, 1);
+            if (!item.isEmpty() && item.get(0).getTimestamp() >= millis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    List<ClipboardItem> search(String query, int limit);
+
+    // Ids of the same matches, so a caller can load and hand them on one at a time
+    default List<String> searchIds(String query, int limit) {
+        List<String> ids = new ArrayList<>();
+        for (ClipboardItem item : search(query, limit)) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    int size();
+
+    // Lets go of cached items beyond the newest few, for when the app sits idle. Stores that
+    // keep everything in memory have nothing they could drop.
+    default void trimCaches(int hotItems) {
+    }
+
+    // Makes every change so far durable
+    void flush();
+
+    // Makes deleted items unreadable from the store's files too, backups and damaged copies
+    // kept for recovery included. For secrets, which must not linger after they are evicted.
+    default void purge() {
+        flush();
+    }
+
+    // Picks up what another process wrote to the store since it was opened or last caught up.
+    // Returns true when anything changed.
+    default boolean catchUp() {
+        return false;
+    }
+
+    void close();
+}
@@ -0,0 +1,256 @@
+package com.clipedge;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Hammers one ClipboardManager from many threads and checks what has to hold whatever
+// the interleaving:
+//   the history never holds more than MAX_ITEMS items,
+//   with duplicates off no text is in it twice,
+//   concurrent adds that fit in the history are all kept,
+//   listener events replayed in order give the same history as the store,
+//   after a flush the log on disk reads back as the history in memory.
+// Then measures mixed-operation throughput from 1 thread up to the given count.
+// Run with: java -p <module path> -m com.clipedge/com.clipedge.HistoryStress [threads] [seconds]
+public class HistoryStress {
+    private interface Operation {
+        void run(ClipboardManager clipboardManager, ThreadLocalRandom random);
+    }
+
+    private static final ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+        Path dir = Files.createTempDirectory("clipedge-stress");
+        try {
+            check(dir.resolve("check"), threads, seconds);
+            measure(dir.resolve("throughput"), threads, seconds);
+        } finally {
+            deleteRecursively(dir);
+        }
+        for (String violation : violations) {
+            System.out.println("FAIL " + violation);
+        }
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+
+    private static void check(Path dir, int threads, double seconds) throws Exception {
+        Files.createDirectories(dir);
+        IndexedHistoryStore store = new IndexedHistoryStore(dir.resolve("history.db"));
+        ClipboardManager clipboardManager = new ClipboardManager(new SettingsManager(dir.resolve("settings.properties")),
+                store, new JsonHistoryStore(dir.resolve("pinned.json")));
+        // Events arrive under the manager's lock, so applying them in arrival order must
+        // rebuild exactly what the store holds
+        List<String> replayed = new LinkedList<>();
+        clipboardManager.addHistoryListener((added, removedIds, reset) -> {
+            if (reset) {
+                replayed.clear();
+                replayed.addAll(clipboardManager.snapshot().ids());
+                return;
+            }
+            replayed.removeAll(new HashSet<>(removedIds));
+            for (ClipboardItem item : added) {
+                replayed.remove(item.getId());
+                replayed.add(0, item.getId());
+            }
+        });
+
+        // Mixed operations with readers checking every view they get
+        long operations = runFor(clipboardManager, threads, seconds, (manager, random) -> {
+            int choice = random.nextInt(100);
+            if (choice < 40) {
+                manager.addClipboardItem("text " + random.nextInt(300));
+            } else if (choice < 50) {
+                List<ClipboardItem> page = manager.page(random.nextInt(ClipboardManager.MAX_ITEMS), 1);
+                if (!page.isEmpty()) {
+                    manager.removeItem(page.get(0));
+                }
+            } else if (choice < 51) {
+                manager.clearAll();
+            } else if (choice < 55) {
+                manager.search("text " + random.nextInt(30), 20);
+            } else {
+                checkItems("mixed", manager.getItems());
+            }
+        });
+        synchronized (clipboardManager) {
+            checkItems("mixed, final", clipboardManager.getItems());
+            if (!replayed.equals(clipboardManager.snapshot().ids())) {
+                violations.add("listener events do not add up to the history");
+            }
+        }
+        System.out.println(String.format(Locale.ROOT, "mixed: %d operations on %d threads", operations, threads));
+
+        // Every thread adds its own texts, all of which fit, while others read
+        clipboardManager.clearAll();
+        int perThread = Math.max(1, ClipboardManager.MAX_ITEMS / threads);
+        AtomicLong nextWriter = new AtomicLong();
+        runTogether(threads, () -> {
+            long writer = nextWriter.getAndIncrement();
+            for (int i = 0; i < perThread; i++) {
+                clipboardManager.addClipboardItem("writer " + writer + " item " + i);
+                checkItems("no loss", clipboardManager.getItems());
+            }
+        });
+        Set<String> texts = new HashSet<>();
+        for (ClipboardItem item : clipboardManager.getItems()) {
+            texts.add(item.getText());
+        }
+        for (int writer = 0; writer < threads; writer++) {
+            for (int i = 0; i < perThread; i++) {
+                if (!texts.contains("writer " + writer + " item " + i)) {
+                    violations.add("lost \"writer " + writer + " item " + i + "\"");
+                }
+            }
+        }
+        if (texts.size() != threads * perThread) {
+            violations.add("no loss: expected " + threads * perThread + " items, found " + texts.size());
+        }
+
+        // Everybody copies the same few texts over and over
+        clipboardManager.clearAll();
+        runTogether(threads, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 200; i++) {
+                clipboardManager.addClipboardItem("shared " + random.nextInt(10));
+            }
+        });
+        List<ClipboardItem> shared = clipboardManager.getItems();
+        checkItems("dedup", shared);
+        if (shared.size() != 10) {
+            violations.add("dedup: expected the 10 shared texts once each, found " + shared.size() + " items");
+        }
+
+        // What is on disk after a flush is what is in memory
+        clipboardManager.saveToFile();
+        IndexedHistoryStore reopened = new IndexedHistoryStore(dir.resolve("history.db"), null, true);
+        List<ClipboardItem> inMemory = clipboardManager.getItems();
+        List<ClipboardItem> onDisk = reopened.page(0, reopened.size());
+        reopened.close();
+        if (!sameItems(inMemory, onDisk)) {
+            violations.add("persisted history differs from the one in memory");
+        }
+        store.close();
+        System.out.println(violations.isEmpty() ? "invariants hold" : violations.size() + " violations");
+    }
+
+    private static void measure(Path dir, int maxThreads, double seconds) throws Exception {
+        System.out.println(String.format(Locale.ROOT, "%8s %14s", "threads", "ops/s"));
+        // 1, 2, 4, ... and the given count last
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            Path runDir = dir.resolve(String.valueOf(threads));
+            Files.createDirectories(runDir);
+            IndexedHistoryStore store = new IndexedHistoryStore(runDir.resolve("history.db"));
+            ClipboardManager clipboardManager = new ClipboardManager(
+                    new SettingsManager(runDir.resolve("settings.properties")), store,
+                    new JsonHistoryStore(runDir.resolve("pinned.json")));
+            long operations = runFor(clipboardManager, threads, seconds, (manager, random) -> {
+                int choice = random.nextInt(10);
+                if (choice < 3) {
+                    manager.addClipboardItem("text " + random.nextInt(1000));
+                } else if (choice < 4) {
+                    List<ClipboardItem> page = manager.page(random.nextInt(ClipboardManager.MAX_ITEMS), 1);
+                    if (!page.isEmpty()) {
+                        manager.removeItem(page.get(0));
+                    }
+                } else {
+                    manager.page(0, 30);
+                }
+            });
+            store.close();
+            System.out.println(String.format(Locale.ROOT, "%8d %14.0f", threads, operations / seconds));
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+
+    private static void checkItems(String phase, List<ClipboardItem> items) {
+        if (items.size() > ClipboardManager.MAX_ITEMS) {
+            violations.add(phase + ": " + items.size() + " items, more than " + ClipboardManager.MAX_ITEMS);
+        }
+        Set<String> texts = new HashSet<>();
+        Set<String> ids = new HashSet<>();
+        for (ClipboardItem item : items) {
+            if (!texts.add(item.getText())) {
+                violations.add(phase + ": \"" + item.getText() + "\" is in the history twice");
+            }
+            if (!ids.add(item.getId())) {
+                violations.add(phase + ": id " + item.getId() + " is in the history twice");
+            }
+        }
+    }
+
+    private static boolean sameItems(List<ClipboardItem> a, List<ClipboardItem> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.get(i).getId().equals(b.get(i).getId()) || !a.get(i).getText().equals(b.get(i).getText())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Runs the operation on every thread until the time is up, returns how often it ran
+    private static long runFor(ClipboardManager clipboardManager, int threads, double seconds, Operation operation)
+            throws InterruptedException {
+        AtomicLong count = new AtomicLong();
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        runTogether(threads, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long done = 0;
+            while (System.nanoTime() < deadline) {
+                operation.run(clipboardManager, random);
+                done++;
+            }
+            count.addAndGet(done);
+        });
+        return count.get();
+    }
+
+    // All threads start at once, any exception is a violation
+    private static void runTogether(int threads, Runnable body) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    body.run();
+                } catch (Throwable t) {
+                    violations.add(Thread.currentThread().getName() + " threw " + t);
+                }
+            }, "stress-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
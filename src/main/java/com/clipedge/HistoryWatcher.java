@@ -0,0 +1,73 @@
+package com.clipedge;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Set;
+
+// Tells a viewer when the owning instance has written to the history files, so it can
+// catch up on the new records instead of polling or re-reading everything
+public class HistoryWatcher {
+    private static final Set<String> WATCHED_FILES = Set.of(
+            "clipboard_history.db", "clipboard_history.edb", "clipboard_history.json", "pinned.json", "pinned.edb");
+    // Saves come in bursts of several writes, they are answered with one callback
+    private static final long SETTLE_MS = 100;
+
+    private final Path storageDir;
+    private final Runnable onChange;
+    private WatchService watchService;
+    private Thread thread;
+
+    public HistoryWatcher(Path storageDir, Runnable onChange) {
+        this.storageDir = storageDir;
+        this.onChange = onChange;
+    }
+
+    public void start() throws IOException {
+        watchService = storageDir.getFileSystem().newWatchService();
+        storageDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this::watch, "history-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error stopping history watcher: " + e.getMessage());
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean relevant = drain(key);
+                Thread.sleep(SETTLE_MS);
+                WatchKey more;
+                while ((more = watchService.poll()) != null) {
+                    relevant |= drain(more);
+                }
+                if (relevant) {
+                    onChange.run();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    private boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // Overflow means events were lost, so assume the history changed
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || WATCHED_FILES.contains(event.context().toString())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+}
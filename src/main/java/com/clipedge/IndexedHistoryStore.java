@@ -0,0 +1,831 @@
+package com.clipedge;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Append-only log of add/delete records with in-memory indexes over it.
+// Item text stays on disk and is read on demand through a small cache.
+// With a RecordCipher every item's text is sealed on its own, so appends never touch
+// earlier records and only the items a page shows get decrypted.
+public class IndexedHistoryStore implements HistoryStore {
+    private static final int MAGIC = 0x43454442; // "CEDB"
+    private static final int VERSION = 1;
+    private static final int VERSION_ENCRYPTED = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final byte RECORD_ADD = 1;
+    private static final byte RECORD_DELETE = 2;
+    private static final byte RECORD_CLEAR = 3;
+    // Same as RECORD_ADD with the capture time as epoch milliseconds instead of an ISO string
+    private static final byte RECORD_ADD_TIMED = 4;
+    // First record of every log, a random number that changes whenever compaction replaces
+    // the file. Readers tell a replaced log by it, file keys are not there on every platform.
+    private static final byte RECORD_GENERATION = 5;
+    private static final int GENERATION_RECORD_SIZE = 4 + 1 + 8 + 4;
+    private static final int CACHE_SIZE = 256;
+    private static final long COMPACT_MIN_GARBAGE = 512 * 1024;
+    private static final Random GENERATION_RANDOM = new SecureRandom();
+
+    private final Path storageFile;
+    private final RecordCipher cipher;
+    private final boolean readOnly;
+    private FileChannel channel;
+    private Object fileKey;
+    // 0 for a log written before generations were
+    private long generation;
+    private long logEnd;
+    private long nextSeq = 1;
+    private long garbageBytes = 0;
+    private long liveBytes = 0;
+    private boolean dirty = false;
+
+    // Entries ordered by sequence number, the newest item is at the end. Their times never
+    // decrease along the list either, which makes it the time index as well.
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Entry> byId = new HashMap<>();
+    private final Map<Long, List<Entry>> byHash = new HashMap<>();
+    private Map<Long, Set<Entry>> trigramIndex;
+    private final Map<String, ClipboardItem> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ClipboardItem> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private static class Entry {
+        final long seq;
+        final String id;
+        final long time;
+        long textOffset;
+        final int textLength;
+        final long hash;
+        long recordStart;
+        final int recordLength;
+
+        Entry(long seq, String id, long time, long textOffset, int textLength, long hash,
+              long recordStart, int recordLength) {
+            this.seq = seq;
+            this.id = id;
+            this.time = time;
+            this.textOffset = textOffset;
+            this.textLength = textLength;
+            this.hash = hash;
+            this.recordStart = recordStart;
+            this.recordLength = recordLength;
+        }
+    }
+
+    public IndexedHistoryStore(Path storageFile) throws IOException {
+        this(storageFile, null);
+    }
+
+    public IndexedHistoryStore(Path storageFile, RecordCipher cipher) throws IOException {
+        this(storageFile, cipher, false);
+    }
+
+    // A read-only store never writes to the log, it follows another process's changes through catchUp
+    public IndexedHistoryStore(Path storageFile, RecordCipher cipher, boolean readOnly) throws IOException {
+        this.storageFile = storageFile;
+        this.cipher = cipher;
+        this.readOnly = readOnly;
+        open();
+    }
+
+    @Override
+    public synchronized void append(ClipboardItem item) {
+        if (readOnly) {
+            return;
+        }
+        byte[] plain = item.getText().getBytes(StandardCharsets.UTF_8);
+        try {
+            long textHash = textHash(plain);
+            byte[] text = cipher != null ? cipher.encrypt(plain, item.getId().getBytes(StandardCharsets.UTF_8)) : plain;
+            ByteArrayOutputStream prefixBytes = new ByteArrayOutputStream();
+            DataOutputStream prefix = new DataOutputStream(prefixBytes);
+            long seq = nextSeq++;
+            prefix.writeByte(RECORD_ADD_TIMED);
+            prefix.writeLong(seq);
+            prefix.writeUTF(item.getId());
+            prefix.writeLong(item.getTimestamp());
+            if (cipher != null) {
+                prefix.writeLong(textHash);
+            }
+            prefix.writeInt(text.length);
+            byte[] head = prefixBytes.toByteArray();
+
+            long recordStart = channel.size();
+            int recordLength = writeRecord(recordStart, head, text);
+            Entry entry = new Entry(seq, item.getId(), indexTime(item.getTimestamp()), recordStart + 4 + head.length,
+                    text.length, textHash, recordStart, recordLength);
+            index(entry);
+            liveBytes += recordLength;
+            cache.put(entry.id, entry.time == item.getTimestamp() ? item
+                    : new ClipboardItem(item.getId(), item.getText(), entry.time));
+            if (trigramIndex != null) {
+                addTrigrams(entry, item.getText());
+            }
+            dirty = true;
+        } catch (IOException e) {
+            System.err.println("Error appending clipboard item: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized boolean delete(String id) {
+        Entry entry = byId.get(id);
+        if (entry == null || readOnly) {
+            return false;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(RECORD_DELETE);
+            out.writeUTF(id);
+            int recordLength = writeRecord(channel.size(), bytes.toByteArray(), new byte[0]);
+            garbageBytes += recordLength;
+        } catch (IOException e) {
+            System.err.println("Error deleting clipboard item: " + e.getMessage());
+            return false;
+        }
+        if (trigramIndex != null) {
+            removeTrigrams(entry);
+        }
+        unindex(entry);
+        liveBytes -= entry.recordLength;
+        garbageBytes += entry.recordLength;
+        cache.remove(id);
+        dirty = true;
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        if (readOnly) {
+            return;
+        }
+        try {
+            int recordLength = writeRecord(channel.size(), new byte[]{RECORD_CLEAR}, new byte[0]);
+            garbageBytes += liveBytes + recordLength;
+            liveBytes = 0;
+        } catch (IOException e) {
+            System.err.println("Error clearing clipboard history: " + e.getMessage());
+            return;
+        }
+        entries.clear();
+        byId.clear();
+        byHash.clear();
+        cache.clear();
+        trigramIndex = null;
+        dirty = true;
+    }
+
+    @Override
+    public synchronized List<ClipboardItem> page(int offset, int limit) {
+        List<ClipboardItem> page = new ArrayList<>();
+        int start = entries.size() - 1 - Math.max(offset, 0);
+        for (int i = start; i >= 0 && page.size() < limit; i--) {
+            ClipboardItem item = load(entries.get(i));
+            if (item != null) {
+                page.add(item);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized List<String> ids() {
+        List<String> ids = new ArrayList<>(entries.size());
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            ids.add(entries.get(i).id);
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized ClipboardItem findById(String id) {
+        Entry entry = byId.get(id);
+        return entry != null ? load(entry) : null;
+    }
+
+    // Plain text is streamed from its own handle on the log, which keeps reading the same file
+    // even if compaction replaces it meanwhile. Sealed text has to be authenticated as a whole
+    // before any of it can be released, so it is decrypted up front.
+    @Override
+    public synchronized InputStream openText(String id) throws IOException {
+        Entry entry = byId.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (cipher == null) {
+            FileChannel file = FileChannel.open(storageFile, StandardOpenOption.READ);
+            if (isSameLog(file)) {
+                return new TextStream(file, entry.textOffset, entry.textLength);
+            }
+            // Another process compacted the log and the offsets are not caught up yet
+            file.close();
+        }
+        ByteBuffer text = ByteBuffer.allocate(entry.textLength);
+        readFully(entry.textOffset, text);
+        byte[] plain = text.array();
+        if (cipher != null) {
+            plain = cipher.decrypt(plain, entry.id.getBytes(StandardCharsets.UTF_8));
+        }
+        return new ByteArrayInputStream(plain);
+    }
+
+    // Lower bound over the entries by time
+    @Override
+    public synchronized int countSince(long millis) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entries.get(middle).time < millis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return entries.size() - low;
+    }
+
+    @Override
+    public synchronized ClipboardItem findByText(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        List<Entry> candidates = byHash.get(textHash(bytes));
+        if (candidates == null) {
+            return null;
+        }
+        int storedLength = bytes.length + (cipher != null ? RecordCipher.OVERHEAD : 0);
+        for (Entry entry : candidates) {
+            if (entry.textLength == storedLength) {
+                ClipboardItem item = load(entry);
+                if (item != null && item.getText().equals(text)) {
+                    return item;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized List<ClipboardItem> search(String query, int limit) {
+        List<ClipboardItem> results = new ArrayList<>();
+        scan(query, limit, results::add);
+        return results;
+    }
+
+    // Only the ids are kept, large matches are never all in memory together
+    @Override
+    public synchronized List<String> searchIds(String query, int limit) {
+        List<String> ids = new ArrayList<>();
+        scan(query, limit, item -> ids.add(item.getId()));
+        return ids;
+    }
+
+    private void scan(String query, int limit, Consumer<ClipboardItem> onMatch) {
+        String needle = query.toLowerCase();
+        Collection<Entry> candidates = entries;
+        if (needle.length() >= 3) {
+            candidates = trigramCandidates(needle);
+        }
+        List<Entry> ordered = new ArrayList<>(candidates);
+        ordered.sort((a, b) -> Long.compare(b.seq, a.seq));
+        int found = 0;
+        for (Entry entry : ordered) {
+            if (found >= limit) {
+                break;
+            }
+            ClipboardItem item = load(entry);
+            if (item != null && item.getText().toLowerCase().contains(needle)) {
+                onMatch.accept(item);
+                found++;
+            }
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // The trigram index is rebuilt by the next search that needs it
+    @Override
+    public synchronized void trimCaches(int hotItems) {
+        Set<String> hot = new HashSet<>();
+        for (int i = entries.size() - 1; i >= Math.max(0, entries.size() - hotItems); i--) {
+            hot.add(entries.get(i).id);
+        }
+        cache.keySet().retainAll(hot);
+        trigramIndex = null;
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (readOnly) {
+            return;
+        }
+        try {
+            if (dirty) {
+                channel.force(false);
+                dirty = false;
+            }
+            if (garbageBytes > COMPACT_MIN_GARBAGE && garbageBytes > liveBytes) {
+                compact();
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving clipboard history: " + e.getMessage());
+        }
+    }
+
+    // Deleted records stay in the log until compaction, so purging compacts right away
+    @Override
+    public synchronized void purge() {
+        if (readOnly) {
+            return;
+        }
+        try {
+            if (dirty) {
+                channel.force(false);
+                dirty = false;
+            }
+            compact();
+            Files.deleteIfExists(SafeFiles.corruptPath(storageFile));
+        } catch (IOException e) {
+            System.err.println("Error purging clipboard history: " + e.getMessage());
+        }
+    }
+
+    // Replays records appended since the last call. Compaction replaces the file, which
+    // shows up as a new generation or a shorter file, and is answered with a full reload.
+    @Override
+    public synchronized boolean catchUp() {
+        try {
+            if (!Files.exists(storageFile)) {
+                return false;
+            }
+            boolean replaced;
+            try (FileChannel file = FileChannel.open(storageFile, StandardOpenOption.READ)) {
+                replaced = !isSameLog(file) || file.size() < logEnd;
+            }
+            if (replaced) {
+                reload();
+                return true;
+            }
+            if (channel.size() == logEnd) {
+                return false;
+            }
+            long end = scan(logEnd);
+            if (end == logEnd) {
+                return false;
+            }
+            logEnd = end;
+            trigramIndex = null;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error following clipboard history: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void reload() throws IOException {
+        channel.close();
+        entries.clear();
+        byId.clear();
+        byHash.clear();
+        cache.clear();
+        trigramIndex = null;
+        garbageBytes = 0;
+        liveBytes = 0;
+        generation = 0;
+        open();
+    }
+
+    // Whether the file behind the path is still the log the index was built from
+    private boolean isSameLog(FileChannel file) throws IOException {
+        long current = readGeneration(file);
+        if (current != 0 || generation != 0) {
+            return current == generation;
+        }
+        // Neither log has a generation, only the file key can tell, where there is one
+        Object key = Files.readAttributes(storageFile, BasicFileAttributes.class).fileKey();
+        return fileKey == null || fileKey.equals(key);
+    }
+
+    // 0 when the log does not start with a generation record
+    private static long readGeneration(FileChannel file) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(GENERATION_RECORD_SIZE);
+        while (record.hasRemaining()) {
+            if (file.read(record, HEADER_SIZE + record.position()) < 0) {
+                return 0;
+            }
+        }
+        record.flip();
+        if (record.getInt() != GENERATION_RECORD_SIZE - 8 || record.get() != RECORD_GENERATION) {
+            return 0;
+        }
+        long value = record.getLong();
+        int crc = (int) SafeFiles.crc32(Arrays.copyOfRange(record.array(), 4, GENERATION_RECORD_SIZE - 4));
+        return record.getInt() == crc ? value : 0;
+    }
+
+    private static long newGeneration(long previous) {
+        long next;
+        do {
+            next = GENERATION_RANDOM.nextLong();
+        } while (next == 0 || next == previous);
+        return next;
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing clipboard history: " + e.getMessage());
+        }
+    }
+
+    // Rewrites the log with only the live records. The index moves to the new offsets only
+    // once the new log has replaced the old one, until then it keeps reading the old file.
+    public synchronized void compact() throws IOException {
+        Path temp = storageFile.resolveSibling(storageFile.getFileName() + ".compact");
+        long newGeneration = newGeneration(generation);
+        long[] newStarts = new long[entries.size()];
+        boolean replaced = false;
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = writeStart(out, newGeneration);
+                for (int i = 0; i < entries.size(); i++) {
+                    Entry entry = entries.get(i);
+                    ByteBuffer record = ByteBuffer.allocate(entry.recordLength);
+                    readFully(entry.recordStart, record);
+                    record.flip();
+                    while (record.hasRemaining()) {
+                        out.write(record, position + entry.recordLength - record.remaining());
+                    }
+                    newStarts[i] = position;
+                    position += entry.recordLength;
+                }
+                out.force(true);
+            }
+            channel.close();
+            try {
+                Files.move(temp, storageFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, storageFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            replaced = true;
+        } finally {
+            if (!replaced) {
+                // The old log is still in place and still matches the index
+                if (!channel.isOpen()) {
+                    channel = FileChannel.open(storageFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                }
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    System.err.println("Error removing compaction leftovers: " + e.getMessage());
+                }
+            }
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            long delta = newStarts[i] - entry.recordStart;
+            entry.recordStart += delta;
+            entry.textOffset += delta;
+        }
+        channel = FileChannel.open(storageFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fileKey = Files.readAttributes(storageFile, BasicFileAttributes.class).fileKey();
+        generation = newGeneration;
+        Metrics.add("store.compactedBytes", garbageBytes);
+        garbageBytes = 0;
+    }
+
+    private void open() throws IOException {
+        if (readOnly) {
+            channel = FileChannel.open(storageFile, StandardOpenOption.READ);
+            fileKey = Files.readAttributes(storageFile, BasicFileAttributes.class).fileKey();
+            // A record still being written is picked up by a later catchUp
+            logEnd = channel.size() >= HEADER_SIZE ? scan(0) : 0;
+            return;
+        }
+        boolean created = !Files.exists(storageFile);
+        channel = FileChannel.open(storageFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fileKey = Files.readAttributes(storageFile, BasicFileAttributes.class).fileKey();
+        if (created || channel.size() == 0) {
+            generation = newGeneration(0);
+            logEnd = writeStart(channel, generation);
+            channel.force(true);
+            return;
+        }
+        long validEnd = scan(0);
+        logEnd = validEnd;
+        if (validEnd < channel.size()) {
+            // A torn or damaged record ends the log, everything before it is intact
+            System.err.println("Clipboard history log is damaged, recovered " + entries.size() + " items");
+            SafeFiles.quarantine(storageFile);
+            channel.truncate(validEnd);
+            channel.force(true);
+        }
+    }
+
+    // Header and generation record, returns where the first item record goes
+    private long writeStart(FileChannel target, long generation) throws IOException {
+        ByteBuffer start = ByteBuffer.allocate(HEADER_SIZE + GENERATION_RECORD_SIZE);
+        start.putInt(MAGIC).putInt(formatVersion());
+        start.putInt(GENERATION_RECORD_SIZE - 8).put(RECORD_GENERATION).putLong(generation);
+        start.putInt((int) SafeFiles.crc32(Arrays.copyOfRange(start.array(), HEADER_SIZE + 4,
+                HEADER_SIZE + GENERATION_RECORD_SIZE - 4)));
+        start.flip();
+        while (start.hasRemaining()) {
+            target.write(start, start.position());
+        }
+        return HEADER_SIZE + GENERATION_RECORD_SIZE;
+    }
+
+    // Replays the log from the given offset into the indexes and returns where the last
+    // intact record ends. Offset 0 also checks the header.
+    private long scan(long from) throws IOException {
+        long size = channel.size();
+        // Not closed, closing the stream would close the channel too
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(from))));
+        long position = from;
+        try {
+            if (from == 0) {
+                checkHeader(in);
+                position = HEADER_SIZE;
+            }
+            while (position + 8 <= size) {
+                int length = in.readInt();
+                if (length <= 0 || position + 8 + length > size) {
+                    break;
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                int crc = in.readInt();
+                if ((int) SafeFiles.crc32(body) != crc) {
+                    break;
+                }
+                replay(body, position);
+                position += 8 + length;
+            }
+            return position;
+        } catch (EOFException e) {
+            return Math.max(position, HEADER_SIZE);
+        }
+    }
+
+    private void checkHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a clipboard history log: " + storageFile);
+        }
+        if (in.readInt() != formatVersion()) {
+            throw new IOException((cipher != null ? "Clipboard history log is not encrypted: "
+                    : "Clipboard history log is encrypted: ") + storageFile);
+        }
+    }
+
+    private void replay(byte[] body, long recordStart) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        int recordLength = body.length + 8;
+        if (type == RECORD_ADD || type == RECORD_ADD_TIMED) {
+            long seq = in.readLong();
+            String id = in.readUTF();
+            long time = type == RECORD_ADD_TIMED ? in.readLong() : Timestamps.parse(in.readUTF());
+            // Encrypted records carry their keyed hash, plain ones are hashed here
+            long textHash = cipher != null ? in.readLong() : 0;
+            int textLength = in.readInt();
+            int textStart = body.length - textLength;
+            if (cipher == null) {
+                textHash = hash(body, textStart, textLength);
+            }
+            Entry previous = byId.get(id);
+            if (previous != null) {
+                unindex(previous);
+                liveBytes -= previous.recordLength;
+                garbageBytes += previous.recordLength;
+            }
+            Entry entry = new Entry(seq, id, indexTime(time), recordStart + 4 + textStart,
+                    textLength, textHash, recordStart, recordLength);
+            index(entry);
+            liveBytes += recordLength;
+            nextSeq = Math.max(nextSeq, seq + 1);
+        } else if (type == RECORD_DELETE) {
+            Entry entry = byId.get(in.readUTF());
+            if (entry != null) {
+                unindex(entry);
+                liveBytes -= entry.recordLength;
+                garbageBytes += entry.recordLength;
+            }
+            garbageBytes += recordLength;
+        } else if (type == RECORD_GENERATION) {
+            generation = in.readLong();
+        } else if (type == RECORD_CLEAR) {
+            entries.clear();
+            byId.clear();
+            byHash.clear();
+            garbageBytes += liveBytes + recordLength;
+            liveBytes = 0;
+        }
+    }
+
+    // Record layout: length, body (prefix + text), CRC32 of the body
+    private int writeRecord(long position, byte[] head, byte[] text) throws IOException {
+        int length = head.length + text.length;
+        ByteBuffer record = ByteBuffer.allocate(length + 8);
+        record.putInt(length).put(head).put(text);
+        int crc = (int) SafeFiles.crc32(Arrays.copyOfRange(record.array(), 4, 4 + length));
+        record.putInt(crc).flip();
+        long at = position;
+        while (record.hasRemaining()) {
+            at += channel.write(record, at);
+        }
+        return length + 8;
+    }
+
+    // An item stamped earlier than the one before it, after the clock was set back say, is
+    // listed at that item's time so the times stay sorted
+    private long indexTime(long time) {
+        return entries.isEmpty() ? time : Math.max(time, entries.get(entries.size() - 1).time);
+    }
+
+    private void index(Entry entry) {
+        // Sequence numbers only grow, so appends stay sorted
+        if (entries.isEmpty() || entries.get(entries.size() - 1).seq < entry.seq) {
+            entries.add(entry);
+        } else {
+            int position = Collections.binarySearch(entries, entry, Comparator.comparingLong(e -> e.seq));
+            entries.add(position < 0 ? -position - 1 : position, entry);
+        }
+        byId.put(entry.id, entry);
+        byHash.computeIfAbsent(entry.hash, h -> new ArrayList<>(1)).add(entry);
+    }
+
+    private void unindex(Entry entry) {
+        int position = Collections.binarySearch(entries, entry, Comparator.comparingLong(e -> e.seq));
+        if (position >= 0) {
+            entries.remove(position);
+        }
+        byId.remove(entry.id);
+        List<Entry> sameHash = byHash.get(entry.hash);
+        if (sameHash != null) {
+            sameHash.remove(entry);
+            if (sameHash.isEmpty()) {
+                byHash.remove(entry.hash);
+            }
+        }
+    }
+
+    private ClipboardItem load(Entry entry) {
+        ClipboardItem cached = cache.get(entry.id);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            ByteBuffer text = ByteBuffer.allocate(entry.textLength);
+            readFully(entry.textOffset, text);
+            byte[] plain = text.array();
+            if (cipher != null) {
+                plain = cipher.decrypt(plain, entry.id.getBytes(StandardCharsets.UTF_8));
+            }
+            ClipboardItem item = new ClipboardItem(entry.id, new String(plain, StandardCharsets.UTF_8), entry.time);
+            cache.put(entry.id, item);
+            return item;
+        } catch (IOException e) {
+            System.err.println("Error reading clipboard item: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void readFully(long position, ByteBuffer buffer) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, at);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of clipboard history log");
+            }
+            at += read;
+        }
+    }
+
+    private Collection<Entry> trigramCandidates(String needle) {
+        if (trigramIndex == null) {
+            trigramIndex = new HashMap<>();
+            for (Entry entry : entries) {
+                ClipboardItem item = load(entry);
+                if (item != null) {
+                    addTrigrams(entry, item.getText());
+                }
+            }
+        }
+        // Every match contains all of the query's trigrams, so the rarest one bounds the scan
+        Set<Entry> smallest = null;
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            Set<Entry> posting = trigramIndex.get(trigram(needle, i));
+            if (posting == null) {
+                return Collections.emptyList();
+            }
+            if (smallest == null || posting.size() < smallest.size()) {
+                smallest = posting;
+            }
+        }
+        return smallest != null ? smallest : Collections.emptyList();
+    }
+
+    private void addTrigrams(Entry entry, String text) {
+        String lower = text.toLowerCase();
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            trigramIndex.computeIfAbsent(trigram(lower, i), k -> new HashSet<>()).add(entry);
+        }
+    }
+
+    private void removeTrigrams(Entry entry) {
+        ClipboardItem item = load(entry);
+        if (item == null) {
+            trigramIndex = null;
+            return;
+        }
+        String lower = item.getText().toLowerCase();
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            Set<Entry> posting = trigramIndex.get(trigram(lower, i));
+            if (posting != null) {
+                posting.remove(entry);
+            }
+        }
+    }
+
+    private static long trigram(String text, int index) {
+        return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+    }
+
+    private int formatVersion() {
+        return cipher != null ? VERSION_ENCRYPTED : VERSION;
+    }
+
+    private long textHash(byte[] text) {
+        return cipher != null ? cipher.hash(text) : hash(text, 0, text.length);
+    }
+
+    // 64-bit FNV-1a
+    private static long hash(byte[] bytes, int offset, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= bytes[i] & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // One item's text read straight from the log, closing the stream closes the handle
+    private static class TextStream extends InputStream {
+        private final FileChannel file;
+        private long position;
+        private final long end;
+
+        TextStream(FileChannel file, long position, int length) {
+            this.file = file;
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == 1 ? one[0] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = file.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, end - position)), position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of clipboard history log");
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.clipedge;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Held for the lifetime of the process that owns the history. The OS drops the lock when
+// the process dies, so a crash never leaves a stale lock behind.
+public final class InstanceLock {
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private InstanceLock(FileChannel channel, FileLock lock) {
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    // Returns null when another process already holds the lock
+    public static InstanceLock tryAcquire(Path storageDir) throws IOException {
+        Files.createDirectories(storageDir);
+        FileChannel channel = FileChannel.open(storageDir.resolve("instance.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = channel.tryLock();
+        if (lock == null) {
+            channel.close();
+            return null;
+        }
+        return new InstanceLock(channel, lock);
+    }
+
+    public void release() {
+        try {
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error releasing instance lock: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.clipedge;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+public final class IpcClient {
+    private IpcClient() {
+    }
+
+    // Sends one request and passes each response line on as it arrives
+    public static void send(Path socketFile, String request, Consumer<String> onLine) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socketFile));
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+            out.write(request);
+            out.newLine();
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                onLine.accept(line);
+            }
+        }
+    }
+
+    // Sends one request with an optional body and copies the response body to sink as it
+    // arrives. Returns 0 on OK and 1 on ERR, whose message goes to stderr.
+    public static int call(Path socketFile, String request, InputStream body, OutputStream sink) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socketFile));
+            OutputStream out = Channels.newOutputStream(channel);
+            out.write((request + "\n").getBytes(StandardCharsets.UTF_8));
+            if (body != null) {
+                body.transferTo(out);
+            }
+            channel.shutdownOutput();
+
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+            String status = readStatus(in);
+            if (status == null) {
+                throw new IOException("no response");
+            }
+            if (!status.equals("OK")) {
+                System.err.println(status.startsWith("ERR ") ? status.substring(4) : status);
+                return 1;
+            }
+            in.transferTo(sink);
+            sink.flush();
+            return 0;
+        }
+    }
+
+    // The running instance may still be starting up, so connecting is retried for a while
+    public static boolean sendWithRetry(Path socketFile, String request, Consumer<String> onLine, long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            try {
+                send(socketFile, request, onLine);
+                return true;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() >= deadline) {
+                    return false;
+                }
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private static String readStatus(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return b == -1 && line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+    }
+}
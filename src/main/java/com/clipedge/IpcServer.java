@@ -0,0 +1,124 @@
+package com.clipedge;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Local control socket of the running instance. A request is one line, "command [argument]",
+// optionally followed by a body until the client shuts down its output. The response starts
+// with "OK" or "ERR <message>" on its own line and the rest is streamed until the connection closes.
+public class IpcServer {
+    public static final String SOCKET_FILE = "clipedge.sock";
+    private static final int CONNECTION_THREADS = 4;
+
+    public interface Handler {
+        // Returns normally after writing "OK" and the body, or throws to answer with ERR
+        void handle(String argument, BufferedReader in, BufferedWriter out) throws IOException;
+    }
+
+    private final Path socketFile;
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+    // Connections are served here, never on the FX thread, and a slow client only holds one thread
+    private final ExecutorService connections = Executors.newFixedThreadPool(CONNECTION_THREADS, r -> {
+        Thread thread = new Thread(r, "ipc-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ServerSocketChannel server;
+    private Thread acceptor;
+
+    public IpcServer(Path socketFile) {
+        this.socketFile = socketFile;
+    }
+
+    public void register(String command, Handler handler) {
+        handlers.put(command, handler);
+    }
+
+    // Only the instance holding the InstanceLock starts a server, so a socket file left
+    // over from a crash can be removed safely
+    public void start() throws IOException {
+        Files.deleteIfExists(socketFile);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketFile));
+        acceptor = new Thread(this::acceptLoop, "ipc-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public void stop() {
+        try {
+            if (server != null) {
+                server.close();
+            }
+            connections.shutdownNow();
+            Files.deleteIfExists(socketFile);
+        } catch (IOException e) {
+            System.err.println("Error stopping control socket: " + e.getMessage());
+        }
+    }
+
+    private void acceptLoop() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel connection = server.accept();
+                connections.execute(() -> serve(connection));
+            } catch (IOException e) {
+                if (server.isOpen()) {
+                    System.err.println("Error accepting control connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(SocketChannel connection) {
+        try (connection;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(connection), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(connection), StandardCharsets.UTF_8))) {
+            String request = in.readLine();
+            if (request == null) {
+                return;
+            }
+            int space = request.indexOf(' ');
+            String command = space < 0 ? request : request.substring(0, space);
+            String argument = space < 0 ? "" : request.substring(space + 1);
+            Handler handler = handlers.get(command);
+            if (handler == null) {
+                error(out, "unknown command: " + command);
+            } else {
+                try {
+                    handler.handle(argument, in, out);
+                } catch (IllegalArgumentException e) {
+                    error(out, e.getMessage());
+                } catch (RuntimeException e) {
+                    // The client gets an answer whatever went wrong, not a dropped connection
+                    System.err.println("Error handling control command " + command + ": " + e);
+                    error(out, "internal error: " + e.getMessage());
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error serving control connection: " + e.getMessage());
+        }
+    }
+
+    public static void ok(BufferedWriter out) throws IOException {
+        out.write("OK");
+        out.newLine();
+    }
+
+    private static void error(BufferedWriter out, String message) throws IOException {
+        out.write("ERR " + message);
+        out.newLine();
+    }
+}
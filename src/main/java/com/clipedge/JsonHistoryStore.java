@@ -0,0 +1,299 @@
+package com.clipedge;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+
+// Keeps the whole history in memory and rewrites the file on every flush
+public class JsonHistoryStore implements HistoryStore {
+    private static final String HISTORY_HEADER = "#clipedge-history v2";
+
+    private final Path storageFile;
+    private final boolean readOnly;
+    private final Gson gson;
+    private FileTime loadedModified;
+    private List<ClipboardItem> items = new ArrayList<>();
+    private boolean dirty = false;
+
+    public JsonHistoryStore(Path storageFile) {
+        this(storageFile, false);
+    }
+
+    public JsonHistoryStore(Path storageFile, boolean readOnly) {
+        this.storageFile = storageFile;
+        this.readOnly = readOnly;
+        this.gson = new GsonBuilder().disableHtmlEscaping().create();
+        load();
+    }
+
+    // Holds nothing and writes nowhere, for when the real history cannot be opened
+    static JsonHistoryStore detached() {
+        return new JsonHistoryStore(null, true);
+    }
+
+    @Override
+    public synchronized void append(ClipboardItem item) {
+        items.add(0, item);
+        dirty = true;
+    }
+
+    @Override
+    public synchronized boolean delete(String id) {
+        boolean removed = items.removeIf(item -> item.getId().equals(id));
+        dirty |= removed;
+        return removed;
+    }
+
+    @Override
+    public synchronized void clear() {
+        items.clear();
+        dirty = true;
+    }
+
+    @Override
+    public synchronized List<ClipboardItem> page(int offset, int limit) {
+        int from = Math.min(Math.max(offset, 0), items.size());
+        int to = Math.min(items.size(), from + Math.max(limit, 0));
+        return new ArrayList<>(items.subList(from, to));
+    }
+
+    @Override
+    public synchronized List<String> ids() {
+        List<String> ids = new ArrayList<>(items.size());
+        for (ClipboardItem item : items) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized ClipboardItem findById(String id) {
+        for (ClipboardItem item : items) {
+            if (item.getId().equals(id)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized ClipboardItem findByText(String text) {
+        for (ClipboardItem item : items) {
+            if (item.getText().equals(text)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized List<ClipboardItem> search(String query, int limit) {
+        String needle = query.toLowerCase();
+        List<ClipboardItem> results = new ArrayList<>();
+        for (ClipboardItem item : items) {
+            if (results.size() >= limit) {
+                break;
+            }
+            if (item.getText().toLowerCase().contains(needle)) {
+                results.add(item);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized int size() {
+        return items.size();
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (!dirty || readOnly) {
+            return;
+        }
+        try {
+            SafeFiles.writeAtomically(storageFile, encodeHistory(items));
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("Error saving clipboard history: " + e.getMessage());
+        }
+    }
+
+    // The file itself is rewritten without the deleted items, the backups still hold them.
+    // They are dropped, the next saves start new ones.
+    @Override
+    public synchronized void purge() {
+        if (readOnly) {
+            return;
+        }
+        dirty = true;
+        flush();
+        try {
+            for (int generation = 1; generation <= SafeFiles.BACKUP_GENERATIONS; generation++) {
+                Files.deleteIfExists(SafeFiles.backupPath(storageFile, generation));
+            }
+            Files.deleteIfExists(SafeFiles.corruptPath(storageFile));
+        } catch (IOException e) {
+            System.err.println("Error purging clipboard history: " + e.getMessage());
+        }
+    }
+
+    // The whole file is rewritten on every save, so there is nothing to do but read it again
+    @Override
+    public synchronized boolean catchUp() {
+        try {
+            if (storageFile == null || !Files.exists(storageFile)
+                    || Files.getLastModifiedTime(storageFile).equals(loadedModified)) {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        items = new ArrayList<>();
+        load();
+        return true;
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void load() {
+        if (storageFile == null || !Files.exists(storageFile)) {
+            return;
+        }
+        try {
+            loadedModified = Files.getLastModifiedTime(storageFile);
+        } catch (IOException e) {
+            loadedModified = null;
+        }
+        HistoryReadResult primary = readHistory(storageFile);
+        if (primary.intact) {
+            items = primary.items;
+            return;
+        }
+
+        // Salvage what is left and fill the gaps from the newest intact backup
+        System.err.println("Clipboard history is damaged, recovered " + primary.items.size() + " items");
+        // A viewer only reads, the owning instance keeps the damaged copy
+        if (!readOnly) {
+            SafeFiles.quarantine(storageFile);
+        }
+        Map<String, ClipboardItem> recovered = new LinkedHashMap<>();
+        for (ClipboardItem item : primary.items) {
+            recovered.put(item.getId(), item);
+        }
+        for (int generation = 1; generation <= SafeFiles.BACKUP_GENERATIONS; generation++) {
+            Path backup = SafeFiles.backupPath(storageFile, generation);
+            if (Files.exists(backup)) {
+                HistoryReadResult fromBackup = readHistory(backup);
+                if (fromBackup.intact) {
+                    for (ClipboardItem item : fromBackup.items) {
+                        recovered.putIfAbsent(item.getId(), item);
+                    }
+                    break;
+                }
+            }
+        }
+        List<ClipboardItem> merged = new ArrayList<>(recovered.values());
+        merged.sort(Comparator.comparingLong(ClipboardItem::getTimestamp).reversed());
+        items = merged;
+        dirty = true;
+        flush();
+    }
+
+    // One item per line, each prefixed with the CRC32 of its JSON, so a damaged
+    // line only costs that one item
+    private byte[] encodeHistory(List<ClipboardItem> list) {
+        StringBuilder out = new StringBuilder();
+        out.append(HISTORY_HEADER).append(' ').append(list.size()).append('\n');
+        for (ClipboardItem item : list) {
+            String json = gson.toJson(item);
+            long crc = SafeFiles.crc32(json.getBytes(StandardCharsets.UTF_8));
+            out.append(String.format("%08x", crc)).append(' ').append(json).append('\n');
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Also used to import the history when switching to another store
+    static List<ClipboardItem> readItems(Path file) {
+        return new JsonHistoryStore(file).page(0, Integer.MAX_VALUE);
+    }
+
+    private HistoryReadResult readHistory(Path file) {
+        List<ClipboardItem> loaded = new ArrayList<>();
+        try {
+            String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            if (!content.startsWith(HISTORY_HEADER)) {
+                return readLegacyHistory(content);
+            }
+            String[] lines = content.split("\n");
+            int expected = Integer.parseInt(lines[0].substring(HISTORY_HEADER.length()).trim());
+            boolean intact = true;
+            for (int i = 1; i < lines.length; i++) {
+                ClipboardItem item = decodeLine(lines[i]);
+                if (item != null) {
+                    loaded.add(item);
+                } else if (!lines[i].isEmpty()) {
+                    intact = false;
+                }
+            }
+            return new HistoryReadResult(loaded, intact && loaded.size() == expected);
+        } catch (Exception e) {
+            System.err.println("Error loading clipboard history: " + e.getMessage());
+            return new HistoryReadResult(loaded, false);
+        }
+    }
+
+    private ClipboardItem decodeLine(String line) {
+        int space = line.indexOf(' ');
+        if (space != 8) {
+            return null;
+        }
+        try {
+            String json = line.substring(space + 1);
+            long crc = Long.parseLong(line.substring(0, space), 16);
+            if (crc != SafeFiles.crc32(json.getBytes(StandardCharsets.UTF_8))) {
+                return null;
+            }
+            ClipboardItem item = gson.fromJson(json, ClipboardItem.class);
+            return item != null && item.getId() != null && item.getText() != null ? item : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Files written before checksums were added are a plain JSON array
+    private HistoryReadResult readLegacyHistory(String content) {
+        List<ClipboardItem> loaded = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new StringReader(content))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                ClipboardItem item = gson.fromJson(reader, ClipboardItem.class);
+                if (item != null && item.getId() != null && item.getText() != null) {
+                    loaded.add(item);
+                }
+            }
+            reader.endArray();
+            return new HistoryReadResult(loaded, true);
+        } catch (Exception e) {
+            return new HistoryReadResult(loaded, false);
+        }
+    }
+
+    private static class HistoryReadResult {
+        final List<ClipboardItem> items;
+        final boolean intact;
+
+        HistoryReadResult(List<ClipboardItem> items, boolean intact) {
+            this.items = items;
+            this.intact = intact;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.clipedge;
+
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.ClipboardOwner;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Clipboard contents that refer to a stored item by id. Nothing is read until a target asks
+// for the data, and then the text is streamed from the store where the flavor allows it.
+// Several items copied together are joined with a separator when asked for. Small items are
+// simply held as text, and an item removed while on the clipboard is read in first, so a
+// paste keeps working after the item is gone.
+public class LazyTransferable implements Transferable, ClipboardOwner {
+    // Texts up to this many chars cost less to hold than to stream
+    static final int INLINE_LIMIT = 64 * 1024;
+
+    public static final DataFlavor UTF8_STREAM_FLAVOR =
+            new DataFlavor("text/plain;charset=UTF-8;class=java.io.InputStream", "Plain Text");
+    public static final DataFlavor READER_FLAVOR =
+            new DataFlavor("text/plain;class=java.io.Reader", "Plain Text");
+    private static final DataFlavor[] FLAVORS = {UTF8_STREAM_FLAVOR, READER_FLAVOR, DataFlavor.stringFlavor};
+
+    // The contents this process last put on the clipboard, until another owner takes over
+    private static volatile LazyTransferable current;
+
+    private final ClipboardManager clipboardManager;
+    private final List<String> itemIds;
+    private final String separator;
+    // Texts read in already, by id: the whole text of a small item, or an item that was
+    // removed from the history while still on the clipboard
+    private final Map<String, String> snapshots = new ConcurrentHashMap<>();
+
+    private LazyTransferable(ClipboardManager clipboardManager, List<String> itemIds, String separator) {
+        this.clipboardManager = clipboardManager;
+        this.itemIds = itemIds;
+        this.separator = separator;
+    }
+
+    // Copying an item moves it to the top of the history, as a capture of the same text
+    // would. Returns the id of the item now on the clipboard.
+    public static String copy(ClipboardManager clipboardManager, ClipboardItem item) {
+        ClipboardItem recaptured = clipboardManager.addClipboardItem(item.getText());
+        // Pinned, or a viewer, the item stays where it is
+        String id = recaptured != null ? recaptured.getId() : item.getId();
+        LazyTransferable contents = new LazyTransferable(clipboardManager, List.of(id), "");
+        // A viewer never hears about the owner removing an item, so it keeps its own copy
+        if (item.getText().length() <= INLINE_LIMIT || clipboardManager.isReadOnly()) {
+            contents.snapshots.put(id, item.getText());
+        } else {
+            Metrics.increment("clipboard.lazyCopies");
+        }
+        setContents(contents);
+        // Copying an item back out of the history is what counts as using it
+        clipboardManager.recordUse(id);
+        return id;
+    }
+
+    // The items' texts in the given order with the separator between them, as one text
+    public static void copyJoined(ClipboardManager clipboardManager, List<String> itemIds, String separator) {
+        setContents(new LazyTransferable(clipboardManager, List.copyOf(itemIds), separator));
+        Metrics.increment("clipboard.joinedCopies");
+        clipboardManager.recordUses(itemIds);
+    }
+
+    private static void setContents(LazyTransferable contents) {
+        Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+        synchronized (LazyTransferable.class) {
+            clipboard.setContents(contents, contents);
+            current = contents;
+        }
+    }
+
+    // Reading our own contents back would load the whole item for nothing. The clipboard is
+    // asked every time, lostOwnership can come late (macOS notices a new owner only when the
+    // clipboard is next looked at), and trusting the flag alone would skip another app's copy.
+    public static boolean ownsClipboard(Clipboard clipboard) {
+        LazyTransferable contents = current;
+        if (contents == null) {
+            return false;
+        }
+        if (clipboard.getContents(null) == contents) {
+            return true;
+        }
+        synchronized (LazyTransferable.class) {
+            if (current == contents) {
+                current = null;
+            }
+        }
+        return false;
+    }
+
+    // Called before an item leaves the store. If it is still on the clipboard its text is
+    // read in now, while it can be.
+    static void retain(ClipboardManager clipboardManager, String id) {
+        LazyTransferable contents = current;
+        if (contents == null || contents.clipboardManager != clipboardManager
+                || !contents.itemIds.contains(id) || contents.snapshots.containsKey(id)) {
+            return;
+        }
+        try (InputStream text = clipboardManager.openText(id)) {
+            if (text != null) {
+                contents.snapshots.put(id, new String(text.readAllBytes(), StandardCharsets.UTF_8));
+                Metrics.increment("clipboard.retained");
+            }
+        } catch (IOException e) {
+            System.err.println("Error keeping clipboard item: " + e.getMessage());
+        }
+    }
+
+    static void retainAll(ClipboardManager clipboardManager) {
+        LazyTransferable contents = current;
+        if (contents != null) {
+            for (String id : contents.itemIds) {
+                retain(clipboardManager, id);
+            }
+        }
+    }
+
+    // Id of the item on the clipboard while this process owns it, otherwise null. Joined
+    // items are no single item.
+    public static String currentItemId() {
+        LazyTransferable contents = current;
+        return contents != null && contents.itemIds.size() == 1 ? contents.itemIds.get(0) : null;
+    }
+
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return FLAVORS.clone();
+    }
+
+    @Override
+    public boolean isDataFlavorSupported(DataFlavor flavor) {
+        for (DataFlavor supported : FLAVORS) {
+            if (supported.equals(flavor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException, IOException {
+        if (!isDataFlavorSupported(flavor)) {
+            throw new UnsupportedFlavorException(flavor);
+        }
+        InputStream text = itemIds.size() == 1 ? open(itemIds.get(0)) : openJoined();
+        if (text == null) {
+            throw new IOException("Clipboard item is no longer in the history");
+        }
+        Metrics.increment("clipboard.transfers");
+        if (UTF8_STREAM_FLAVOR.equals(flavor)) {
+            return text;
+        }
+        if (READER_FLAVOR.equals(flavor)) {
+            return new InputStreamReader(text, StandardCharsets.UTF_8);
+        }
+        try (text) {
+            return new String(text.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // Reads one item at a time, so a long selection never has more than one file open. Items
+    // deleted since the copy are left out, null when none is left.
+    private InputStream openJoined() throws IOException {
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        byte[] separatorBytes = separator.getBytes(StandardCharsets.UTF_8);
+        boolean first = true;
+        for (String id : itemIds) {
+            InputStream text = open(id);
+            if (text == null) {
+                continue;
+            }
+            if (!first) {
+                joined.write(separatorBytes);
+            }
+            first = false;
+            try (text) {
+                text.transferTo(joined);
+            }
+        }
+        return first ? null : new ByteArrayInputStream(joined.toByteArray());
+    }
+
+    private InputStream open(String id) throws IOException {
+        String snapshot = snapshots.get(id);
+        if (snapshot != null) {
+            return new ByteArrayInputStream(snapshot.getBytes(StandardCharsets.UTF_8));
+        }
+        return clipboardManager.openText(id);
+    }
+
+    @Override
+    public void lostOwnership(Clipboard clipboard, Transferable contents) {
+        // A later copy of our own may already have replaced this one
+        synchronized (LazyTransferable.class) {
+            if (current == this) {
+                current = null;
+            }
+        }
+    }
+}
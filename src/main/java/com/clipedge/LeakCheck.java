@@ -0,0 +1,95 @@
+package com.clipedge;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+// Samples a few gauges over a long run and tells which of them kept growing. A gauge fails
+// when the median of its last quarter of samples exceeds the median of its first quarter by
+// more than its allowance. Medians keep a single GC hiccup or a burst of rows from counting.
+public class LeakCheck {
+    private static final int MIN_SAMPLES = 8;
+
+    private static class Gauge {
+        final String name;
+        final LongSupplier reading;
+        final double relativeAllowance;
+        final long absoluteAllowance;
+        final List<Long> samples = new ArrayList<>();
+
+        Gauge(String name, LongSupplier reading, double relativeAllowance, long absoluteAllowance) {
+            this.name = name;
+            this.reading = reading;
+            this.relativeAllowance = relativeAllowance;
+            this.absoluteAllowance = absoluteAllowance;
+        }
+    }
+
+    private final List<Gauge> gauges = new ArrayList<>();
+    private final List<Long> sampleTimes = new ArrayList<>();
+    private final long startMillis = System.currentTimeMillis();
+
+    // A reading below 0 means the gauge is not available here, it is then left out
+    public void gauge(String name, LongSupplier reading, double relativeAllowance, long absoluteAllowance) {
+        gauges.add(new Gauge(name, reading, relativeAllowance, absoluteAllowance));
+    }
+
+    public void sample() {
+        sampleTimes.add(System.currentTimeMillis() - startMillis);
+        for (Gauge gauge : gauges) {
+            gauge.samples.add(gauge.reading.getAsLong());
+        }
+    }
+
+    public int sampleCount() {
+        return sampleTimes.size();
+    }
+
+    // One line per gauge that grew past its allowance, empty when none did
+    public List<String> failures() {
+        List<String> failures = new ArrayList<>();
+        if (sampleTimes.size() < MIN_SAMPLES) {
+            failures.add("only " + sampleTimes.size() + " samples, at least " + MIN_SAMPLES + " are needed");
+            return failures;
+        }
+        int quarter = sampleTimes.size() / 4;
+        for (Gauge gauge : gauges) {
+            if (gauge.samples.get(0) < 0) {
+                continue;
+            }
+            long first = median(gauge.samples.subList(0, quarter));
+            long last = median(gauge.samples.subList(gauge.samples.size() - quarter, gauge.samples.size()));
+            long limit = first + Math.max(gauge.absoluteAllowance, (long) (first * gauge.relativeAllowance));
+            if (last > limit) {
+                failures.add(String.format(Locale.ROOT, "%s grew from %d to %d, allowed up to %d",
+                        gauge.name, first, last, limit));
+            }
+        }
+        return failures;
+    }
+
+    // Every sample as CSV, minutes since the start first
+    public void print(PrintStream out) {
+        StringBuilder header = new StringBuilder("minutes");
+        for (Gauge gauge : gauges) {
+            header.append(',').append(gauge.name);
+        }
+        out.println(header);
+        for (int i = 0; i < sampleTimes.size(); i++) {
+            StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "%.1f", sampleTimes.get(i) / 60_000.0));
+            for (Gauge gauge : gauges) {
+                row.append(',').append(gauge.samples.get(i));
+            }
+            out.println(row);
+        }
+    }
+
+    private static long median(List<Long> values) {
+        long[] sorted = values.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,101 @@
+package com.clipedge;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+// What the process holds on to, for the metrics and the soak test
+public final class MemoryStats {
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+    private static final Path PROC_FDS = Paths.get("/proc/self/fd");
+    // com.sun.management.GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+    private MemoryStats() {
+    }
+
+    public static long heapUsedBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Resident set size as the OS sees it, -1 where there is no /proc to read it from
+    public static long residentBytes() {
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS)) {
+                if (line.startsWith("VmRSS:")) {
+                    String kilobytes = line.substring("VmRSS:".length()).replace("kB", "").trim();
+                    return Long.parseLong(kilobytes) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not Linux, or no procfs
+        }
+        return -1;
+    }
+
+    // Heap still in use after a full collection, what a leak shows up in
+    public static long heapAfterGcBytes() {
+        System.gc();
+        return heapUsedBytes();
+    }
+
+    // Runs the callback once, on a JMX thread, right after the JVM's next collection of any
+    // kind. Never runs where the collectors send no notifications.
+    public static void afterNextGc(Consumer<Sample> callback) {
+        List<NotificationEmitter> emitters = new ArrayList<>();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                emitters.add((NotificationEmitter) collector);
+            }
+        }
+        AtomicBoolean fired = new AtomicBoolean();
+        NotificationListener listener = new NotificationListener() {
+            @Override
+            public void handleNotification(Notification notification, Object handback) {
+                if (!GC_NOTIFICATION.equals(notification.getType()) || !fired.compareAndSet(false, true)) {
+                    return;
+                }
+                for (NotificationEmitter emitter : emitters) {
+                    try {
+                        emitter.removeNotificationListener(this);
+                    } catch (ListenerNotFoundException e) {
+                        // Already gone
+                    }
+                }
+                callback.accept(new Sample(heapUsedBytes(), residentBytes()));
+            }
+        };
+        for (NotificationEmitter emitter : emitters) {
+            emitter.addNotificationListener(listener, null, null);
+        }
+    }
+
+    public record Sample(long heapUsedBytes, long residentBytes) {
+    }
+
+    public static int threadCount() {
+        return Thread.getAllStackTraces().size();
+    }
+
+    // -1 where there is no /proc to count them in
+    public static long openFileDescriptors() {
+        try (Stream<Path> fds = Files.list(PROC_FDS)) {
+            return fds.count();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
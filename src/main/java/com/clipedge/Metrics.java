@@ -0,0 +1,36 @@
+package com.clipedge;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class Metrics {
+    private static final Map<String, AtomicLong> values = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    public static void add(String name, long delta) {
+        values.computeIfAbsent(name, k -> new AtomicLong()).addAndGet(delta);
+    }
+
+    public static void set(String name, long value) {
+        values.computeIfAbsent(name, k -> new AtomicLong()).set(value);
+    }
+
+    public static long get(String name) {
+        AtomicLong value = values.get(name);
+        return value != null ? value.get() : 0;
+    }
+
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> copy = new TreeMap<>();
+        values.forEach((name, value) -> copy.put(name, value.get()));
+        return copy;
+    }
+}
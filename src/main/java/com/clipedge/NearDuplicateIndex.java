@@ -0,0 +1,108 @@
+package com.clipedge;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Groups items whose SimHash fingerprints are within a few bits of each other. Fingerprints
+// are split into MAX_DISTANCE + 1 bands and bucketed by each band's value: two fingerprints
+// that close have at least one band in common, so only a handful of buckets is searched
+// per lookup however long the history gets. Not thread-safe, ClipboardManager guards it.
+public class NearDuplicateIndex {
+    public static final int MAX_DISTANCE = 6;
+    private static final int BANDS = MAX_DISTANCE + 1;
+    // Bounds a lookup even when one bucket fills up with copies of the same thing
+    private static final int MAX_BUCKET_SCAN = 64;
+
+    private static class Member {
+        final String id;
+        final long fingerprint;
+        final long order;
+        final String group;
+
+        Member(String id, long fingerprint, long order, String group) {
+            this.id = id;
+            this.fingerprint = fingerprint;
+            this.order = order;
+            this.group = group;
+        }
+    }
+
+    private final Map<String, Member> byId = new HashMap<>();
+    private final Map<Integer, List<Member>> buckets = new HashMap<>();
+    private long nextOrder = 0;
+
+    // Joins the newest close enough item's group, or starts a group of its own
+    public void add(String id, long fingerprint) {
+        remove(id);
+        Member closest = fingerprint != 0 ? findNearest(fingerprint) : null;
+        Member member = new Member(id, fingerprint, nextOrder++, closest != null ? closest.group : id);
+        byId.put(id, member);
+        if (fingerprint != 0) {
+            for (int band = 0; band < BANDS; band++) {
+                buckets.computeIfAbsent(bucketKey(band, fingerprint), k -> new ArrayList<>()).add(member);
+            }
+        }
+    }
+
+    public void remove(String id) {
+        Member member = byId.remove(id);
+        if (member == null) {
+            return;
+        }
+        if (member.fingerprint != 0) {
+            for (int band = 0; band < BANDS; band++) {
+                int key = bucketKey(band, member.fingerprint);
+                List<Member> bucket = buckets.get(key);
+                if (bucket != null) {
+                    bucket.remove(member);
+                    if (bucket.isEmpty()) {
+                        buckets.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        byId.clear();
+        buckets.clear();
+    }
+
+    // The group an item belongs to, named after the item that started it
+    public String groupOf(String id) {
+        Member member = byId.get(id);
+        return member != null ? member.group : id;
+    }
+
+    private Member findNearest(long fingerprint) {
+        Member nearest = null;
+        int checked = 0;
+        for (int band = 0; band < BANDS; band++) {
+            List<Member> bucket = buckets.get(bucketKey(band, fingerprint));
+            if (bucket == null) {
+                continue;
+            }
+            // Newest first, the bucket is in insertion order
+            for (int i = bucket.size() - 1; i >= Math.max(0, bucket.size() - MAX_BUCKET_SCAN); i--) {
+                Member candidate = bucket.get(i);
+                checked++;
+                if ((nearest == null || candidate.order > nearest.order)
+                        && SimHash.distance(candidate.fingerprint, fingerprint) <= MAX_DISTANCE) {
+                    nearest = candidate;
+                }
+            }
+        }
+        Metrics.add("nearDuplicates.candidatesChecked", checked);
+        return nearest;
+    }
+
+    // Band b covers bits [64b / BANDS, 64(b + 1) / BANDS), the band number goes above them
+    private static int bucketKey(int band, long fingerprint) {
+        int from = 64 * band / BANDS;
+        int to = 64 * (band + 1) / BANDS;
+        long bits = (fingerprint >>> from) & ((1L << (to - from)) - 1);
+        return (band << 16) | (int) bits;
+    }
+}
@@ -0,0 +1,57 @@
+package com.clipedge;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// The newest items for the quick palette, kept up to date from history changes so
+// opening the palette never has to touch the store
+public class PaletteModel {
+    public static final int SIZE = 20;
+
+    private final ClipboardManager clipboardManager;
+    private final ObservableList<ClipboardItem> items = FXCollections.observableArrayList();
+
+    public PaletteModel(ClipboardManager clipboardManager) {
+        this.clipboardManager = clipboardManager;
+        items.setAll(clipboardManager.page(0, SIZE));
+        clipboardManager.addHistoryListener((added, removedIds, reset) ->
+                Platform.runLater(() -> apply(added, removedIds, reset)));
+    }
+
+    public ObservableList<ClipboardItem> getItems() {
+        return items;
+    }
+
+    private void apply(List<ClipboardItem> added, List<String> removedIds, boolean reset) {
+        if (reset) {
+            items.setAll(clipboardManager.page(0, SIZE));
+            return;
+        }
+        if (!removedIds.isEmpty()) {
+            Set<String> removed = new HashSet<>(removedIds);
+            items.removeIf(item -> removed.contains(item.getId()));
+        }
+        for (ClipboardItem item : added) {
+            items.removeIf(existing -> existing.getId().equals(item.getId()));
+            items.add(0, item);
+        }
+        if (items.size() > SIZE) {
+            items.remove(SIZE, items.size());
+        } else if (items.size() < SIZE && !removedIds.isEmpty()) {
+            // What is left is still the head of the history, so the gap is filled from just after it
+            Set<String> present = new HashSet<>();
+            for (ClipboardItem item : items) {
+                present.add(item.getId());
+            }
+            for (ClipboardItem item : clipboardManager.page(items.size(), SIZE - items.size())) {
+                if (present.add(item.getId())) {
+                    items.add(item);
+                }
+            }
+        }
+    }
+}
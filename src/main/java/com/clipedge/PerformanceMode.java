@@ -0,0 +1,129 @@
+package com.clipedge;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.CacheHint;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PerformanceMode {
+    private static final String LOW_POWER_CLASS = "low-power";
+    private static final int SAMPLE_FRAMES = 90;
+    private static final double SLOW_FRAME_MS = 1000.0 / 30;
+    private static final double FAST_FRAME_MS = 1000.0 / 50;
+    private static final long RESAMPLE_INTERVAL_MS = 60_000;
+    private static final int BURST_CAPTURES = 3;
+    private static final long BURST_WINDOW_MS = 2000;
+    private static final long THROTTLED_ANIMATION_INTERVAL_MS = 1000;
+
+    private final SettingsManager settingsManager;
+    private final List<Scene> scenes = new ArrayList<>();
+    private final long[] recentCaptures = new long[BURST_CAPTURES];
+    private int captureIndex = 0;
+    private long lastCaptureAnimation = 0;
+    private long lastSample = 0;
+    private boolean lowPower;
+    private FrameSampler sampler;
+
+    public PerformanceMode(SettingsManager settingsManager) {
+        this.settingsManager = settingsManager;
+        this.lowPower = "on".equals(settingsManager.getPerformanceMode());
+    }
+
+    public boolean isLowPower() {
+        return lowPower;
+    }
+
+    public void register(Scene scene) {
+        scenes.add(scene);
+        applyTo(scene);
+    }
+
+    public int registeredSceneCount() {
+        return scenes.size();
+    }
+
+    // Renders a node's effect once into a bitmap instead of recomputing it every frame
+    public void cacheEffect(Node node) {
+        node.setCache(true);
+        node.setCacheHint(CacheHint.SPEED);
+    }
+
+    // Called for every captured clip, returns false while a burst is in progress
+    public boolean shouldAnimateCapture() {
+        long now = System.currentTimeMillis();
+        long oldest = recentCaptures[captureIndex];
+        recentCaptures[captureIndex] = now;
+        captureIndex = (captureIndex + 1) % BURST_CAPTURES;
+
+        boolean burst = oldest != 0 && now - oldest < BURST_WINDOW_MS;
+        if ((burst || lowPower) && now - lastCaptureAnimation < THROTTLED_ANIMATION_INTERVAL_MS) {
+            Metrics.increment("animations.throttled");
+            return false;
+        }
+        lastCaptureAnimation = now;
+        return true;
+    }
+
+    // Measures frame times for a short window and switches modes when set to auto
+    public void sampleFrameTimes() {
+        if (!"auto".equals(settingsManager.getPerformanceMode()) || sampler != null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (lastSample != 0 && now - lastSample < RESAMPLE_INTERVAL_MS) {
+            return;
+        }
+        lastSample = now;
+        sampler = new FrameSampler();
+        sampler.start();
+    }
+
+    private void onSampled(double medianFrameMs) {
+        sampler = null;
+        Metrics.set("frames.medianMicros", (long) (medianFrameMs * 1000));
+        if (!lowPower && medianFrameMs > SLOW_FRAME_MS) {
+            setLowPower(true);
+        } else if (lowPower && medianFrameMs < FAST_FRAME_MS) {
+            setLowPower(false);
+        }
+    }
+
+    private void setLowPower(boolean value) {
+        lowPower = value;
+        Metrics.set("performance.lowPower", value ? 1 : 0);
+        Metrics.increment("performance.switches");
+        for (Scene scene : scenes) {
+            applyTo(scene);
+        }
+    }
+
+    private void applyTo(Scene scene) {
+        List<String> styleClass = scene.getRoot().getStyleClass();
+        styleClass.remove(LOW_POWER_CLASS);
+        if (lowPower) {
+            styleClass.add(LOW_POWER_CLASS);
+        }
+    }
+
+    private class FrameSampler extends AnimationTimer {
+        private final long[] intervals = new long[SAMPLE_FRAMES];
+        private long previous = 0;
+        private int count = 0;
+
+        @Override
+        public void handle(long now) {
+            if (previous != 0) {
+                intervals[count++] = now - previous;
+            }
+            previous = now;
+            if (count == SAMPLE_FRAMES) {
+                stop();
+                Arrays.sort(intervals);
+                onSampled(intervals[SAMPLE_FRAMES / 2] / 1_000_000.0);
+            }
+        }
+    }
+}
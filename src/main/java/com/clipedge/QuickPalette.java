@@ -0,0 +1,200 @@
+package com.clipedge;
+
+import javafx.geometry.Pos;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.robot.Robot;
+import javafx.stage.Screen;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+
+// Keyboard-driven list of the newest items, opened at the mouse pointer. The window is built
+// and shown once at startup, so opening it later only moves and shows a finished window.
+public class QuickPalette {
+    private static final int SHORTCUT_COUNT = 9;
+    private static final double WIDTH = 440;
+    private static final double ROW_HEIGHT = 34;
+    private static final int VISIBLE_ROWS = 10;
+    private static final int PREVIEW_LENGTH = 80;
+    private static final long FRAME_MICROS = 16_667;
+
+    private final ClipboardManager clipboardManager;
+    private final Stage stage;
+    private final Scene scene;
+    private final ListView<ClipboardItem> list;
+    private final Robot robot = new Robot();
+    private final Runnable latencyProbe = this::recordOpenLatency;
+    private long openStartNanos;
+
+    public QuickPalette(ClipboardManager clipboardManager, PaletteModel model, SettingsManager settingsManager,
+                        PerformanceMode performanceMode) {
+        this.clipboardManager = clipboardManager;
+        list = new ListView<>(model.getItems());
+        list.getStyleClass().add("palette-list");
+        list.setFixedCellSize(ROW_HEIGHT);
+        list.setPrefHeight(ROW_HEIGHT * VISIBLE_ROWS + 4);
+        list.setCellFactory(view -> new PaletteCell());
+        list.setOnMouseClicked(e -> copySelected());
+        Label placeholder = new Label("No clipboard history yet");
+        placeholder.getStyleClass().add("empty-label");
+        list.setPlaceholder(placeholder);
+
+        Label hint = new Label("↑↓ select   Enter copy   1-9 quick copy   Esc close");
+        hint.getStyleClass().add("palette-hint");
+
+        VBox root = new VBox(8, list, hint);
+        root.getStyleClass().add("palette-root");
+        root.setPrefWidth(WIDTH);
+
+        scene = new Scene(root);
+        scene.setFill(Color.TRANSPARENT);
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, this::handleKey);
+        Themes.apply(scene, settingsManager.getTheme());
+        settingsManager.addThemeListener(theme -> Themes.apply(scene, theme));
+        performanceMode.register(scene);
+
+        stage = new Stage();
+        stage.initStyle(StageStyle.TRANSPARENT);
+        stage.setAlwaysOnTop(true);
+        stage.setScene(scene);
+        stage.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (!focused) {
+                stage.hide();
+            }
+        });
+
+        // Create the native window and run CSS and layout now rather than on first open
+        stage.setOpacity(0);
+        stage.show();
+        stage.hide();
+        stage.setOpacity(1);
+    }
+
+    public boolean isShowing() {
+        return stage.isShowing();
+    }
+
+    public void toggle() {
+        if (stage.isShowing()) {
+            stage.hide();
+        } else {
+            show();
+        }
+    }
+
+    // Open latency is measured up to the first pulse that lays out the shown palette
+    public void show() {
+        openStartNanos = System.nanoTime();
+        scene.removePostLayoutPulseListener(latencyProbe);
+        scene.addPostLayoutPulseListener(latencyProbe);
+
+        Rectangle2D bounds = screenBoundsAt(robot.getMouseX(), robot.getMouseY());
+        double height = scene.getRoot().prefHeight(WIDTH);
+        stage.setX(Math.max(bounds.getMinX(), Math.min(robot.getMouseX(), bounds.getMaxX() - WIDTH)));
+        stage.setY(Math.max(bounds.getMinY(), Math.min(robot.getMouseY(), bounds.getMaxY() - height)));
+
+        list.getSelectionModel().select(0);
+        list.scrollTo(0);
+        stage.show();
+        stage.requestFocus();
+        list.requestFocus();
+    }
+
+    private void recordOpenLatency() {
+        scene.removePostLayoutPulseListener(latencyProbe);
+        long micros = (System.nanoTime() - openStartNanos) / 1000;
+        Metrics.set("palette.openMicros", micros);
+        Metrics.increment("palette.opens");
+        if (micros > FRAME_MICROS) {
+            Metrics.increment("palette.slowOpens");
+        }
+    }
+
+    private void handleKey(KeyEvent event) {
+        KeyCode code = event.getCode();
+        int shortcut = shortcutIndex(code);
+        if (code == KeyCode.ESCAPE) {
+            stage.hide();
+        } else if (code == KeyCode.ENTER) {
+            copySelected();
+        } else if (shortcut >= 0 && shortcut < list.getItems().size()) {
+            copy(list.getItems().get(shortcut));
+        } else {
+            return;
+        }
+        event.consume();
+    }
+
+    // 1-9 on either the main row or the keypad, -1 for any other key
+    private static int shortcutIndex(KeyCode code) {
+        if (code.compareTo(KeyCode.DIGIT1) >= 0 && code.compareTo(KeyCode.DIGIT9) <= 0) {
+            return code.ordinal() - KeyCode.DIGIT1.ordinal();
+        }
+        if (code.compareTo(KeyCode.NUMPAD1) >= 0 && code.compareTo(KeyCode.NUMPAD9) <= 0) {
+            return code.ordinal() - KeyCode.NUMPAD1.ordinal();
+        }
+        return -1;
+    }
+
+    private void copySelected() {
+        ClipboardItem selected = list.getSelectionModel().getSelectedItem();
+        if (selected != null) {
+            copy(selected);
+        }
+    }
+
+    private void copy(ClipboardItem item) {
+        try {
+            LazyTransferable.copy(clipboardManager, item);
+            Metrics.increment("palette.copies");
+        } catch (Exception e) {
+            System.err.println("Error copying from palette: " + e.getMessage());
+        }
+        stage.hide();
+    }
+
+    private static Rectangle2D screenBoundsAt(double x, double y) {
+        for (Screen screen : Screen.getScreensForRectangle(x, y, 1, 1)) {
+            return screen.getVisualBounds();
+        }
+        return Screen.getPrimary().getVisualBounds();
+    }
+
+    private static String preview(String text) {
+        String preview = text.length() > PREVIEW_LENGTH ? text.substring(0, PREVIEW_LENGTH) + "..." : text;
+        return preview.replace('\n', ' ').replace('\r', ' ').replace('\t', ' ');
+    }
+
+    private static class PaletteCell extends ListCell<ClipboardItem> {
+        private final Label index = new Label();
+        private final Label text = new Label();
+        private final HBox row = new HBox(10, index, text);
+
+        PaletteCell() {
+            index.getStyleClass().add("palette-index");
+            text.getStyleClass().add("palette-text");
+            row.setAlignment(Pos.CENTER_LEFT);
+            getStyleClass().add("palette-row");
+        }
+
+        @Override
+        protected void updateItem(ClipboardItem item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                setGraphic(null);
+                return;
+            }
+            index.setText(getIndex() < SHORTCUT_COUNT ? String.valueOf(getIndex() + 1) : "");
+            text.setText(preview(item.getText()));
+            setGraphic(row);
+        }
+    }
+}
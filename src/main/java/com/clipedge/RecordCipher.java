@@ -0,0 +1,98 @@
+package com.clipedge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+// AES-GCM for single records. Each record carries its own nonce, so records are
+// encrypted and decrypted independently of the rest of the file.
+public class RecordCipher {
+    private static final int KEY_SIZE = 32;
+    private static final int NONCE_SIZE = 12;
+    private static final int TAG_BITS = 128;
+    public static final int OVERHEAD = NONCE_SIZE + TAG_BITS / 8;
+
+    private final SecretKeySpec key;
+    private final Cipher cipher;
+    private final Mac textHash;
+    private final SecureRandom random = new SecureRandom();
+
+    public RecordCipher(byte[] keyBytes) throws IOException {
+        try {
+            Mac derive = Mac.getInstance("HmacSHA256");
+            derive.init(new SecretKeySpec(keyBytes, "HmacSHA256"));
+            this.key = new SecretKeySpec(derive.doFinal("record".getBytes(StandardCharsets.UTF_8)), "AES");
+            byte[] hashKey = derive.doFinal("text-hash".getBytes(StandardCharsets.UTF_8));
+            this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            this.textHash = Mac.getInstance("HmacSHA256");
+            this.textHash.init(new SecretKeySpec(hashKey, "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Encryption is not available: " + e.getMessage(), e);
+        }
+    }
+
+    // Reads the key next to the history, creating one readable only by the owner on first use
+    public static RecordCipher fromKeyFile(Path keyFile) throws IOException {
+        byte[] keyBytes;
+        if (Files.exists(keyFile)) {
+            keyBytes = Files.readAllBytes(keyFile);
+            if (keyBytes.length != KEY_SIZE) {
+                throw new IOException("Invalid history key file: " + keyFile);
+            }
+        } else {
+            keyBytes = new byte[KEY_SIZE];
+            new SecureRandom().nextBytes(keyBytes);
+            SafeFiles.writeAtomically(keyFile, keyBytes);
+            try {
+                Files.setPosixFilePermissions(keyFile, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // Not a POSIX file system, the user profile directory protects it instead
+            }
+        }
+        return new RecordCipher(keyBytes);
+    }
+
+    // Output is nonce + ciphertext + tag. The associated data ties a record to its id,
+    // so records can't be swapped around in the file.
+    public synchronized byte[] encrypt(byte[] plain, byte[] associated) throws IOException {
+        byte[] nonce = new byte[NONCE_SIZE];
+        random.nextBytes(nonce);
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce));
+            cipher.updateAAD(associated);
+            ByteBuffer out = ByteBuffer.allocate(NONCE_SIZE + cipher.getOutputSize(plain.length));
+            out.put(nonce);
+            cipher.doFinal(ByteBuffer.wrap(plain), out);
+            return out.array();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Error encrypting record: " + e.getMessage(), e);
+        }
+    }
+
+    public synchronized byte[] decrypt(byte[] sealed, byte[] associated) throws IOException {
+        if (sealed.length < OVERHEAD) {
+            throw new IOException("Encrypted record is truncated");
+        }
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, sealed, 0, NONCE_SIZE));
+            cipher.updateAAD(associated);
+            return cipher.doFinal(sealed, NONCE_SIZE, sealed.length - NONCE_SIZE);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Error decrypting record: " + e.getMessage(), e);
+        }
+    }
+
+    // Keyed, so equal texts can still be found without the file revealing which ones are equal
+    public synchronized long hash(byte[] plain) {
+        return ByteBuffer.wrap(textHash.doFinal(plain)).getLong();
+    }
+}
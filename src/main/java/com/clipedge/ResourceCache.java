@@ -0,0 +1,74 @@
+package com.clipedge;
+
+import javafx.scene.image.Image;
+import javafx.scene.text.Font;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class ResourceCache {
+    public static final String HEADER_LOGO = "/cledge.png";
+    public static final String APP_ICON = "/icon.png";
+    public static final String MENU_FONT = "/fonts/PlaywriteES-VariableFont_wght.ttf";
+
+    public static final double HEADER_LOGO_WIDTH = 85;
+    public static final double HEADER_LOGO_HEIGHT = 40;
+    public static final double APP_ICON_SIZE = 64;
+    public static final double MENU_FONT_SIZE = 28;
+
+    private static final Map<String, Image> images = new ConcurrentHashMap<>();
+    private static final Map<String, Font> fonts = new ConcurrentHashMap<>();
+
+    private ResourceCache() {
+    }
+
+    // Decodes the image once at the size it is displayed at, instead of keeping the full bitmap
+    public static Image getImage(String path, double width, double height) {
+        return getImage(path, width, height, false);
+    }
+
+    private static Image getImage(String path, double width, double height, boolean background) {
+        String key = path + "@" + width + "x" + height;
+        return images.computeIfAbsent(key, k -> {
+            URL url = ResourceCache.class.getResource(path);
+            if (url == null) {
+                throw new IllegalArgumentException("Missing resource: " + path);
+            }
+            return new Image(url.toExternalForm(), width, height, false, true, background);
+        });
+    }
+
+    // Returns null when the font can't be loaded so callers can fall back to a system font
+    public static Font getFont(String path, double size) {
+        String key = path + "@" + size;
+        Font cached = fonts.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        try (InputStream input = ResourceCache.class.getResourceAsStream(path)) {
+            Font font = input != null ? Font.loadFont(input, size) : null;
+            if (font != null) {
+                fonts.put(key, font);
+            }
+            return font;
+        } catch (Exception e) {
+            System.err.println("Error loading font " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Starts decoding the assets used by the modal while the menu is already on screen
+    public static void preloadInBackground() {
+        Thread preloader = new Thread(() -> {
+            try {
+                getImage(HEADER_LOGO, HEADER_LOGO_WIDTH, HEADER_LOGO_HEIGHT, true);
+                getImage(APP_ICON, APP_ICON_SIZE, APP_ICON_SIZE, true);
+            } catch (Exception e) {
+                System.err.println("Error preloading resources: " + e.getMessage());
+            }
+        }, "resource-preloader");
+        preloader.setDaemon(true);
+        preloader.start();
+    }
+}
@@ -0,0 +1,237 @@
+package com.clipedge;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Walks the history a few items at a time and evicts whatever breaks a retention policy,
+// so capture never waits on a full pass
+public class RetentionSweeper {
+    private static final long TICK_MS = 500;
+    private static final long PASS_INTERVAL_MS = 60_000;
+    private static final int ITEMS_PER_TICK = 50;
+    private static final int EVICTIONS_PER_TICK = 20;
+    private static final int DEFAULT_SENSITIVE_EXPIRY_MINUTES = 10;
+
+    private final ClipboardManager clipboardManager;
+    private final SettingsManager settingsManager;
+    private final Runnable onEvicted;
+    private final ScheduledExecutorService scheduler;
+
+    // State of the pass in progress
+    private List<String> passIds;
+    private int passIndex;
+    private long passBytes;
+    // Items seen per category, plain text with no category in the last slot
+    private int[] passTypeCounts;
+    private LocalDateTime passStart;
+    private final List<String> pendingEvictions = new ArrayList<>();
+    // Evicted as secrets, their records have to be purged from the files as well
+    private final Set<String> pendingSecrets = new HashSet<>();
+
+    public RetentionSweeper(ClipboardManager clipboardManager, SettingsManager settingsManager, Runnable onEvicted) {
+        this.clipboardManager = clipboardManager;
+        this.settingsManager = settingsManager;
+        this.onEvicted = onEvicted;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "retention-sweeper");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public static long getEvictedCount() {
+        return Metrics.get("retention.evicted");
+    }
+
+    public static long getReclaimedBytes() {
+        return Metrics.get("retention.reclaimedBytes");
+    }
+
+    private void tick() {
+        try {
+            if (passIds == null) {
+                if (!hasPolicy() || !passDue()) {
+                    return;
+                }
+                startPass();
+            }
+            scanSome();
+            evictSome();
+            if (passIds != null && passIndex >= passIds.size() && pendingEvictions.isEmpty()) {
+                passIds = null;
+            }
+        } catch (Exception e) {
+            System.err.println("Error enforcing retention: " + e.getMessage());
+            passIds = null;
+            pendingEvictions.clear();
+            pendingSecrets.clear();
+        }
+    }
+
+    private boolean hasPolicy() {
+        return settingsManager.getRetentionMaxAgeDays() > 0
+                || settingsManager.getRetentionMaxBytes() > 0
+                || settingsManager.getRetentionMaxPerType() > 0
+                || secretExpiryMinutes() > 0;
+    }
+
+    // With the "expire" action secrets are kept for a while even when no expiry is configured
+    private int secretExpiryMinutes() {
+        int minutes = settingsManager.getSecretExpiryMinutes();
+        if (minutes == 0 && "expire".equals(settingsManager.getSensitiveAction())) {
+            return DEFAULT_SENSITIVE_EXPIRY_MINUTES;
+        }
+        return minutes;
+    }
+
+    private boolean passDue() {
+        return passStart == null
+                || Duration.between(passStart, LocalDateTime.now()).toMillis() >= PASS_INTERVAL_MS;
+    }
+
+    private void startPass() {
+        passIds = clipboardManager.snapshot().ids();
+        passIndex = 0;
+        passBytes = 0;
+        passTypeCounts = new int[ContentClassifier.Category.values().length + 1];
+        passStart = LocalDateTime.now();
+    }
+
+    // Newest to oldest, so the byte and per-type budgets are spent on the most recent items
+    private void scanSome() {
+        if (passIds == null) {
+            return;
+        }
+        int end = Math.min(passIds.size(), passIndex + ITEMS_PER_TICK);
+        for (; passIndex < end; passIndex++) {
+            ClipboardItem item = clipboardManager.findById(passIds.get(passIndex));
+            if (item != null && shouldEvict(item)) {
+                pendingEvictions.add(item.getId());
+            }
+        }
+    }
+
+    private boolean shouldEvict(ClipboardItem item) {
+        String text = item.getText();
+        long age = ageMinutes(item);
+
+        int maxAgeDays = settingsManager.getRetentionMaxAgeDays();
+        if (maxAgeDays > 0 && age > maxAgeDays * 24L * 60) {
+            Metrics.increment("retention.evicted.age");
+            return true;
+        }
+
+        int secretExpiry = secretExpiryMinutes();
+        if (secretExpiry > 0 && age >= secretExpiry && SensitiveContentDetector.isSensitive(text, settingsManager.isDetectPasswordLike())) {
+            Metrics.increment("retention.evicted.secret");
+            pendingSecrets.add(item.getId());
+            return true;
+        }
+
+        int maxPerType = settingsManager.getRetentionMaxPerType();
+        if (maxPerType > 0 && overTypeCap(item.getId(), maxPerType)) {
+            Metrics.increment("retention.evicted.type");
+            return true;
+        }
+
+        long maxBytes = settingsManager.getRetentionMaxBytes();
+        if (maxBytes > 0) {
+            passBytes += utf8Length(text);
+            if (passBytes > maxBytes) {
+                Metrics.increment("retention.evicted.bytes");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Uses the categories the index got at capture time. An item counts towards each of its
+    // categories and goes when any of them is full.
+    private boolean overTypeCap(String id, int maxPerType) {
+        int categories = clipboardManager.categoriesOf(id);
+        if (categories < 0) {
+            return false;
+        }
+        boolean over = false;
+        if (categories == 0) {
+            over = ++passTypeCounts[passTypeCounts.length - 1] > maxPerType;
+        }
+        for (ContentClassifier.Category category : ContentClassifier.Category.values()) {
+            if ((categories & category.mask()) != 0) {
+                over |= ++passTypeCounts[category.ordinal()] > maxPerType;
+            }
+        }
+        return over;
+    }
+
+    private void evictSome() {
+        if (pendingEvictions.isEmpty()) {
+            return;
+        }
+        List<String> batch = new ArrayList<>(pendingEvictions.subList(0, Math.min(EVICTIONS_PER_TICK, pendingEvictions.size())));
+        pendingEvictions.subList(0, batch.size()).clear();
+
+        long reclaimed = 0;
+        for (String id : batch) {
+            ClipboardItem item = clipboardManager.findById(id);
+            if (item != null && !clipboardManager.isPinned(item)) {
+                reclaimed += utf8Length(item.getText());
+            }
+        }
+        // Items pinned since the scan are left alone
+        int removed = clipboardManager.evictFromHistory(batch);
+        boolean secrets = pendingSecrets.removeAll(batch);
+        if (secrets) {
+            // Otherwise the secret stays readable in the log until compaction comes round
+            clipboardManager.purgeHistory();
+            Metrics.increment("retention.purges");
+        }
+        if (removed > 0) {
+            Metrics.add("retention.evicted", removed);
+            Metrics.add("retention.reclaimedBytes", reclaimed);
+            onEvicted.run();
+        }
+    }
+
+    private static long utf8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    // Items without a capture time never age
+    private static long ageMinutes(ClipboardItem item) {
+        if (item.getTimestamp() == 0) {
+            return 0;
+        }
+        return (System.currentTimeMillis() - item.getTimestamp()) / 60_000;
+    }
+}
@@ -0,0 +1,109 @@
+package com.clipedge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public final class SafeFiles {
+    public static final int BACKUP_GENERATIONS = 3;
+    private static final long BACKUP_INTERVAL_MS = 10 * 60 * 1000;
+
+    private SafeFiles() {
+    }
+
+    // Writes to a temp file in the same directory, fsyncs it and renames it over the target,
+    // so readers only ever see the old or the new content
+    public static void writeAtomically(Path target, byte[] data) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, target.getFileName().toString() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            rotateBackups(target);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            syncDirectory(dir);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public static Path backupPath(Path target, int generation) {
+        return target.resolveSibling(target.getFileName() + ".bak" + generation);
+    }
+
+    public static Path corruptPath(Path target) {
+        return target.resolveSibling(target.getFileName() + ".corrupt");
+    }
+
+    // Keeps the damaged file around so the next save can't destroy what is left of it
+    public static void quarantine(Path target) {
+        try {
+            Path corrupt = corruptPath(target);
+            Files.copy(target, corrupt, StandardCopyOption.REPLACE_EXISTING);
+            System.err.println("Damaged file kept at " + corrupt);
+        } catch (IOException e) {
+            System.err.println("Error keeping damaged file: " + e.getMessage());
+        }
+    }
+
+    // For scratch directories only, the user's storage is never removed wholesale
+    public static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    public static long crc32(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    // Generations are spaced out in time, otherwise a burst of saves would push every
+    // useful backup out within seconds
+    private static void rotateBackups(Path target) throws IOException {
+        if (!Files.exists(target)) {
+            return;
+        }
+        Path newest = backupPath(target, 1);
+        if (Files.exists(newest)) {
+            FileTime modified = Files.getLastModifiedTime(newest);
+            if (System.currentTimeMillis() - modified.toMillis() < BACKUP_INTERVAL_MS) {
+                return;
+            }
+        }
+        for (int generation = BACKUP_GENERATIONS - 1; generation >= 1; generation--) {
+            Path from = backupPath(target, generation);
+            if (Files.exists(from)) {
+                Files.move(from, backupPath(target, generation + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.copy(target, newest, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(newest, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    private static void syncDirectory(Path dir) {
+        // Makes the rename itself durable, not supported on Windows
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort only
+        }
+    }
+}
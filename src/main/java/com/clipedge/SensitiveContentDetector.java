@@ -0,0 +1,332 @@
+package com.clipedge;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.FlavorMap;
+import java.awt.datatransfer.SystemFlavorMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public final class SensitiveContentDetector {
+    public enum Kind {
+        NONE, PRIVATE_KEY, ACCESS_TOKEN, JWT, CARD_NUMBER, CREDENTIAL, PASSWORD_LIKE
+    }
+
+    private static final int MIN_SECRET_LENGTH = 16;
+    private static final int MAX_SECRET_LENGTH = 512;
+
+    // Only the start and the end of large payloads are scanned, secrets pasted from a
+    // password manager or a config snippet are short and never buried in the middle
+    private static final int HEAD_WINDOW = 16 * 1024;
+    private static final int TAIL_WINDOW = 4 * 1024;
+
+    // Patterns are only tried at the start of a whitespace-separated run that could hold a
+    // match, so ordinary prose is skipped after a character or two
+    private static final int MIN_TOKEN_RUN = 20;
+    private static final Pattern PRIVATE_KEY = Pattern.compile("-----BEGIN (?:[A-Z]+ )*PRIVATE KEY-----");
+    private static final Pattern PRIVATE_KEY_END = Pattern.compile("-----END (?:[A-Z]+ )*PRIVATE KEY-----");
+    private static final Pattern ACCESS_TOKEN = Pattern.compile(
+            "(?:AKIA|ASIA)[0-9A-Z]{16}\\b"
+            + "|gh[pousr]_[A-Za-z0-9]{36,}"
+            + "|github_pat_[A-Za-z0-9_]{22,}"
+            + "|xox[abprs]-[A-Za-z0-9-]{10,}"
+            + "|[sr]k_(?:live|test)_[A-Za-z0-9]{16,}"
+            + "|sk-[A-Za-z0-9_-]{20,}"
+            + "|AIza[0-9A-Za-z_-]{35}");
+    private static final Pattern JWT = Pattern.compile("eyJ[A-Za-z0-9_-]{8,}\\.eyJ[A-Za-z0-9_-]{8,}\\.[A-Za-z0-9_-]{8,}");
+    private static final Pattern CREDENTIAL = Pattern.compile(
+            "(?i:password|passwd|pwd|secret|api[_-]?key|access[_-]?token)[\"']?\\s*[:=]\\s*[\"']?(\\S{6,})");
+    private static final Pattern CARD_NUMBER = Pattern.compile(
+            "(?:\\d{13,19}|\\d{4}(?:[ -]\\d{4}){3}(?:\\d{3})?|\\d{4}[ -]\\d{6}[ -]\\d{5})(?!\\d)");
+    private static final int CARD_SPAN = 23;
+    private static final int CREDENTIAL_SPAN = 96;
+
+    // Clipboard formats password managers set to ask clipboard tools not to record a copy
+    private static final String[] CONCEALED_HINTS = {
+            "org.nspasteboard.ConcealedType",
+            "org.nspasteboard.TransientType",
+            "x-kde-passwordManagerHint",
+            "ExcludeClipboardContentFromMonitorProcessing",
+            "CanIncludeInClipboardHistory",
+            "Clipboard Viewer Ignore"
+    };
+    // AWT only reports the formats its flavor map knows, so each hint gets a flavor of its own
+    private static final DataFlavor[] CONCEALED_FLAVORS = new DataFlavor[CONCEALED_HINTS.length];
+    private static boolean hintsRegistered = false;
+
+    private SensitiveContentDetector() {
+    }
+
+    // Only the known shapes of keys, tokens, cards and credentials
+    public static Kind classify(CharSequence text) {
+        return classify(text, false);
+    }
+
+    // passwordLike also guesses at long mixed tokens with no known shape. Paths, class names
+    // and addresses look the same, so the guess is only made when asked for.
+    public static Kind classify(CharSequence text, boolean passwordLike) {
+        int length = text.length();
+        Matchers matchers = new Matchers(text);
+        Kind kind = scan(text, matchers, 0, Math.min(length, HEAD_WINDOW));
+        if (kind == Kind.NONE && length > HEAD_WINDOW) {
+            kind = scan(text, matchers, Math.max(HEAD_WINDOW, length - TAIL_WINDOW), length);
+        }
+        if (kind == Kind.NONE && passwordLike && looksLikeSecret(text)) {
+            kind = Kind.PASSWORD_LIKE;
+        }
+        return kind;
+    }
+
+    public static boolean isSensitive(CharSequence text) {
+        return classify(text) != Kind.NONE;
+    }
+
+    public static boolean isSensitive(CharSequence text, boolean passwordLike) {
+        return classify(text, passwordLike) != Kind.NONE;
+    }
+
+    // Maps the hint formats to their flavors, once, before the clipboard is first looked at
+    public static synchronized void registerConcealedHints() {
+        if (hintsRegistered) {
+            return;
+        }
+        hintsRegistered = true;
+        FlavorMap flavorMap = SystemFlavorMap.getDefaultFlavorMap();
+        for (int i = 0; i < CONCEALED_HINTS.length; i++) {
+            DataFlavor flavor = new DataFlavor("application/x-clipedge-concealed-" + i + ";class=java.io.InputStream",
+                    CONCEALED_HINTS[i]);
+            if (flavorMap instanceof SystemFlavorMap) {
+                SystemFlavorMap systemMap = (SystemFlavorMap) flavorMap;
+                systemMap.addUnencodedNativeForFlavor(flavor, CONCEALED_HINTS[i]);
+                systemMap.addFlavorForUnencodedNative(CONCEALED_HINTS[i], flavor);
+            }
+            CONCEALED_FLAVORS[i] = flavor;
+        }
+    }
+
+    public static boolean isConcealed(Clipboard clipboard) {
+        registerConcealedHints();
+        for (DataFlavor flavor : CONCEALED_FLAVORS) {
+            if (clipboard.isDataFlavorAvailable(flavor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Masks every secret found and keeps the rest of the text, e.g. "token: ghp_••••••••3f".
+    // A text that is nothing but a guessed password is masked whole.
+    public static String mask(String text, boolean passwordLike) {
+        int length = text.length();
+        Matchers matchers = new Matchers(text);
+        StringBuilder masked = new StringBuilder(length);
+        int copied = 0;
+        int[][] windows = {{0, Math.min(length, HEAD_WINDOW)}, {Math.max(HEAD_WINDOW, length - TAIL_WINDOW), length}};
+        for (int[] window : windows) {
+            int from = Math.max(window[0], copied);
+            while (from < window[1] && scan(text, matchers, from, window[1]) != Kind.NONE) {
+                masked.append(text, copied, matchers.spanStart).append(maskSpan(text.substring(matchers.spanStart, matchers.spanEnd)));
+                copied = matchers.spanEnd;
+                from = copied;
+            }
+        }
+        if (copied == 0) {
+            return passwordLike && looksLikeSecret(text) ? maskWhole(text) : text;
+        }
+        return masked.append(text, copied, length).toString();
+    }
+
+    // For copies that are a secret as a whole, like concealed ones
+    public static String maskWhole(String text) {
+        return maskSpan(text.trim());
+    }
+
+    // Keeps enough of a secret to recognise it
+    private static String maskSpan(String secret) {
+        int visible = secret.length() >= 12 ? 4 : 0;
+        int tail = secret.length() >= 12 ? 2 : 0;
+        return secret.substring(0, visible) + "••••••••" + secret.substring(secret.length() - tail);
+    }
+
+    // A single long token mixing letters, digits and symbols, like generated passwords and API keys
+    public static boolean looksLikeSecret(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        int length = end - start;
+        if (length < MIN_SECRET_LENGTH || length > MAX_SECRET_LENGTH) {
+            return false;
+        }
+        boolean lower = false, upper = false, digit = false, symbol = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                return false;
+            } else if (Character.isLowerCase(c)) {
+                lower = true;
+            } else if (Character.isUpperCase(c)) {
+                upper = true;
+            } else if (Character.isDigit(c)) {
+                digit = true;
+            } else if (c == ':' && i + 2 < end && text.charAt(i + 1) == '/' && text.charAt(i + 2) == '/') {
+                return false;
+            } else {
+                symbol = true;
+            }
+        }
+        int classes = (lower ? 1 : 0) + (upper ? 1 : 0) + (digit ? 1 : 0) + (symbol ? 1 : 0);
+        return classes >= 3;
+    }
+
+    // The first match from the given position on, its span is left in the matchers
+    private static Kind scan(CharSequence text, Matchers matchers, int from, int to) {
+        int i = from;
+        while (i < to) {
+            while (i < to && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int runStart = i;
+            while (i < to && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            Kind kind = scanRun(text, matchers, runStart, i, to);
+            if (kind != Kind.NONE) {
+                return kind;
+            }
+        }
+        return Kind.NONE;
+    }
+
+    private static Kind scanRun(CharSequence text, Matchers matchers, int start, int end, int limit) {
+        if (start == end) {
+            return Kind.NONE;
+        }
+        char first = text.charAt(start);
+        if (first == '-' && lookingAt(matchers.privateKey(), start, Math.min(limit, start + 64))) {
+            // The whole block up to its END line, or the rest of the text when it is cut off
+            Matcher keyEnd = matchers.privateKeyEnd();
+            matchers.span(start, find(keyEnd, matchers.privateKey().end(), text.length()) ? keyEnd.end() : text.length());
+            return Kind.PRIVATE_KEY;
+        }
+        if (first >= '0' && first <= '9') {
+            Matcher card = matchers.card();
+            if (lookingAt(card, start, Math.min(limit, start + CARD_SPAN))
+                    && passesLuhn(text, card.start(), card.end())) {
+                matchers.span(card.start(), card.end());
+                return Kind.CARD_NUMBER;
+            }
+            return Kind.NONE;
+        }
+        if (end - start >= MIN_TOKEN_RUN) {
+            if (find(matchers.token(), start, end)) {
+                matchers.span(matchers.token().start(), matchers.token().end());
+                return Kind.ACCESS_TOKEN;
+            }
+            if (find(matchers.jwt(), start, end)) {
+                matchers.span(matchers.jwt().start(), matchers.jwt().end());
+                return Kind.JWT;
+            }
+        }
+        // Keys in configs are often quoted, e.g. "password": "hunter22"
+        int word = start;
+        while (word < end && !Character.isLetter(text.charAt(word))) {
+            word++;
+        }
+        if (word < end && isCredentialInitial(text.charAt(word))
+                && lookingAt(matchers.credential(), word, Math.min(limit, word + CREDENTIAL_SPAN))) {
+            // Only the value, the key name stays readable
+            matchers.span(matchers.credential().start(1), matchers.credential().end(1));
+            return Kind.CREDENTIAL;
+        }
+        return Kind.NONE;
+    }
+
+    private static boolean isCredentialInitial(char c) {
+        c = Character.toLowerCase(c);
+        return c == 'p' || c == 's' || c == 'a';
+    }
+
+    private static boolean lookingAt(Matcher matcher, int from, int to) {
+        matcher.region(from, to);
+        return matcher.lookingAt();
+    }
+
+    private static boolean find(Matcher matcher, int from, int to) {
+        matcher.region(from, to);
+        return matcher.find();
+    }
+
+    // Card-shaped digit runs only count when the Luhn checksum holds
+    private static boolean passesLuhn(CharSequence text, int start, int end) {
+        int sum = 0;
+        int digits = 0;
+        for (int i = end - 1; i >= start; i--) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                continue;
+            }
+            int value = c - '0';
+            if (digits % 2 == 1) {
+                value *= 2;
+                if (value > 9) {
+                    value -= 9;
+                }
+            }
+            sum += value;
+            digits++;
+        }
+        return digits >= 13 && sum % 10 == 0;
+    }
+
+    // Matchers are created on first use and reset for each run, so a scan allocates at most one of each
+    private static final class Matchers {
+        private final CharSequence text;
+        // Where the last match was
+        private int spanStart;
+        private int spanEnd;
+        private Matcher privateKey;
+        private Matcher privateKeyEnd;
+        private Matcher token;
+        private Matcher jwt;
+        private Matcher credential;
+        private Matcher card;
+
+        Matchers(CharSequence text) {
+            this.text = text;
+        }
+
+        void span(int start, int end) {
+            spanStart = start;
+            spanEnd = end;
+        }
+
+        Matcher privateKey() {
+            return privateKey != null ? privateKey : (privateKey = PRIVATE_KEY.matcher(text));
+        }
+
+        Matcher privateKeyEnd() {
+            return privateKeyEnd != null ? privateKeyEnd : (privateKeyEnd = PRIVATE_KEY_END.matcher(text));
+        }
+
+        Matcher token() {
+            return token != null ? token : (token = ACCESS_TOKEN.matcher(text));
+        }
+
+        Matcher jwt() {
+            return jwt != null ? jwt : (jwt = JWT.matcher(text));
+        }
+
+        Matcher credential() {
+            return credential != null ? credential : (credential = CREDENTIAL.matcher(text));
+        }
+
+        Matcher card() {
+            return card != null ? card : (card = CARD_NUMBER.matcher(text));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.clipedge;
+
+import java.util.Locale;
+
+// Measures what the sensitive-content check adds to each capture.
+// Run with: java -p <module path> -m com.clipedge/com.clipedge.SensitiveScanBenchmark
+public class SensitiveScanBenchmark {
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final long ROUND_BUDGET_NANOS = 500_000_000L;
+
+    public static void main(String[] args) {
+        run("short text", "Meeting moved to 3pm, see you there");
+        run("password", "x7#Kq9!vTz2@Lm4$Wp");
+        run("github token", "token ghp_" + "a1B2c3D4e5".repeat(4));
+        run("card number", "4111 1111 1111 1111");
+        run("10 KB prose", prose(10 * 1024));
+        run("1 MB prose", prose(1024 * 1024));
+        run("8 MB prose", prose(8 * 1024 * 1024));
+        run("8 MB digits", "1234567890 ".repeat(800_000));
+    }
+
+    private static void run(String name, String text) {
+        SensitiveContentDetector.Kind kind = SensitiveContentDetector.Kind.NONE;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            kind = SensitiveContentDetector.classify(text);
+        }
+        int rounds = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            kind = SensitiveContentDetector.classify(text);
+            rounds++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ROUND_BUDGET_NANOS);
+        System.out.println(String.format(Locale.ROOT, "%-14s %10d chars %10.2f us/op  %s",
+                name, text.length(), elapsed / 1000.0 / rounds, kind));
+    }
+
+    private static String prose(int length) {
+        String sentence = "The quick brown fox jumps over the lazy dog while copying notes 42 times. ";
+        StringBuilder out = new StringBuilder(length + sentence.length());
+        while (out.length() < length) {
+            out.append(sentence);
+        }
+        out.setLength(length);
+        return out.toString();
+    }
+}
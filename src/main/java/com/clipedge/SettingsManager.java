@@ -1,12 +1,23 @@
 package com.clipedge;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 public class SettingsManager {
+    private static final String CHECKSUM_PREFIX = "#crc32=";
+    // Points a run at storage of its own, the AppCDS training run uses it to stay off the
+    // user's history
+    static final String STORAGE_DIR_PROPERTY = "clipedge.storage.dir";
+
     private Properties properties;
     private Path settingsFile;
+    private final List<Consumer<String>> themeListeners = new CopyOnWriteArrayList<>();
 
     public SettingsManager() {
         properties = new Properties();
@@ -14,6 +25,14 @@ public class SettingsManager {
         loadSettings();
     }
 
+    // Settings kept in the given file, for tools that must not read or change the user's own
+    SettingsManager(Path settingsFile) {
+        properties = new Properties();
+        this.settingsFile = settingsFile;
+        setDefaults();
+        loadSettings();
+    }
+
     private void initSettings() {
         String storageDir = getStorageDirectory();
         try {
@@ -23,17 +42,36 @@ public class SettingsManager {
             e.printStackTrace();
             settingsFile = Paths.get(System.getProperty("java.io.tmpdir"), "cedge_settings.properties");
         }
+        setDefaults();
+    }
 
-        // Set defaults
+    private void setDefaults() {
         setDefaultIfMissing("autoCloseDelay", "5");
         setDefaultIfMissing("allowDuplicates", "false");
         setDefaultIfMissing("theme", "dark");
         setDefaultIfMissing("soundEnabled", "true");
         setDefaultIfMissing("modalWidth", "400");
         setDefaultIfMissing("modalHeight", "500");
+        setDefaultIfMissing("startupMode", "deferred");
+        setDefaultIfMissing("performanceMode", "auto");
+        setDefaultIfMissing("storageBackend", "indexed");
+        setDefaultIfMissing("retentionMaxAgeDays", "0");
+        setDefaultIfMissing("retentionMaxBytes", "0");
+        setDefaultIfMissing("retentionMaxPerType", "0");
+        setDefaultIfMissing("secretExpiryMinutes", "0");
+        setDefaultIfMissing("sensitiveAction", "skip"); // skip, mask, expire or off
+        setDefaultIfMissing("detectPasswordLike", "false");
+        setDefaultIfMissing("evictionPolicy", "frecency");
+        setDefaultIfMissing("historyView", "recent");
+        setDefaultIfMissing("idleReleaseMinutes", "10"); // 0 keeps everything while hidden
+        setDefaultIfMissing("joinSeparator", "newline");
     }
 
-    private String getStorageDirectory() {
+    static String getStorageDirectory() {
+        String override = System.getProperty(STORAGE_DIR_PROPERTY);
+        if (override != null && !override.isBlank()) {
+            return override;
+        }
         String os = System.getProperty("os.name").toLowerCase();
         String home = System.getProperty("user.home");
         if (os.contains("win")) {
@@ -53,26 +91,70 @@ public class SettingsManager {
 
     public void loadSettings() {
         try {
-            if (Files.exists(settingsFile)) {
-                try (InputStream input = Files.newInputStream(settingsFile)) {
-                    properties.load(input);
+            if (!Files.exists(settingsFile)) {
+                return;
+            }
+            byte[] data = Files.readAllBytes(settingsFile);
+            if (isIntact(data)) {
+                properties.load(new ByteArrayInputStream(data));
+                return;
+            }
+
+            // Fall back to the newest intact backup, then keep every readable line of the damaged file
+            System.err.println("Settings file is damaged, recovering");
+            SafeFiles.quarantine(settingsFile);
+            for (int generation = 1; generation <= SafeFiles.BACKUP_GENERATIONS; generation++) {
+                Path backup = SafeFiles.backupPath(settingsFile, generation);
+                if (Files.exists(backup)) {
+                    byte[] backupData = Files.readAllBytes(backup);
+                    if (isIntact(backupData)) {
+                        properties.load(new ByteArrayInputStream(backupData));
+                        break;
+                    }
                 }
             }
-        } catch (IOException e) {
+            properties.load(new ByteArrayInputStream(data));
+            saveSettings();
+        } catch (Exception e) {
             System.err.println("Error loading settings: " + e.getMessage());
         }
     }
 
     public void saveSettings() {
         try {
-            try (OutputStream output = Files.newOutputStream(settingsFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                properties.store(output, "Cedge Settings");
-            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            properties.store(body, "Cedge Settings");
+            byte[] bodyBytes = body.toByteArray();
+            byte[] header = String.format("%s%08x\n", CHECKSUM_PREFIX, SafeFiles.crc32(bodyBytes))
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            byte[] data = new byte[header.length + bodyBytes.length];
+            System.arraycopy(header, 0, data, 0, header.length);
+            System.arraycopy(bodyBytes, 0, data, header.length, bodyBytes.length);
+            SafeFiles.writeAtomically(settingsFile, data);
         } catch (IOException e) {
             System.err.println("Error saving settings: " + e.getMessage());
         }
     }
 
+    // Settings written before checksums were added have no header and are taken as is
+    private boolean isIntact(byte[] data) {
+        String content = new String(data, StandardCharsets.ISO_8859_1);
+        if (!content.startsWith(CHECKSUM_PREFIX)) {
+            return true;
+        }
+        int newline = content.indexOf('\n');
+        if (newline < 0) {
+            return false;
+        }
+        try {
+            long expected = Long.parseLong(content.substring(CHECKSUM_PREFIX.length(), newline).trim(), 16);
+            byte[] body = Arrays.copyOfRange(data, newline + 1, data.length);
+            return expected == SafeFiles.crc32(body);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
     public int getAutoCloseDelay() {
         return Integer.parseInt(properties.getProperty("autoCloseDelay", "5"));
     }
@@ -98,6 +180,17 @@ public class SettingsManager {
     public void setTheme(String value) {
         properties.setProperty("theme", value);
         saveSettings();
+        for (Consumer<String> listener : themeListeners) {
+            listener.accept(value);
+        }
+    }
+
+    public void addThemeListener(Consumer<String> listener) {
+        themeListeners.add(listener);
+    }
+
+    public int themeListenerCount() {
+        return themeListeners.size();
     }
 
     public boolean isSoundEnabled() {
@@ -126,4 +219,133 @@ public class SettingsManager {
         properties.setProperty("modalHeight", String.valueOf(value));
         saveSettings();
     }
-}
\ No newline at end of file
+
+    // eager: build everything up front, deferred: build the modal after the first frame,
+    // lazy: build the modal on first use
+    public String getStartupMode() {
+        return properties.getProperty("startupMode", "deferred");
+    }
+
+    public void setStartupMode(String value) {
+        properties.setProperty("startupMode", value);
+        saveSettings();
+    }
+
+    // auto: pick from measured frame times, on: always low power, off: full effects
+    public String getPerformanceMode() {
+        return properties.getProperty("performanceMode", "auto");
+    }
+
+    public void setPerformanceMode(String value) {
+        properties.setProperty("performanceMode", value);
+        saveSettings();
+    }
+
+    // indexed: append-only log with indexes, json: whole history rewritten on save,
+    // encrypted: indexed log with every item sealed with AES-GCM
+    public String getStorageBackend() {
+        return properties.getProperty("storageBackend", "indexed");
+    }
+
+    public void setStorageBackend(String value) {
+        properties.setProperty("storageBackend", value);
+        saveSettings();
+    }
+
+    // Retention policies, 0 turns a policy off
+    public int getRetentionMaxAgeDays() {
+        return Integer.parseInt(properties.getProperty("retentionMaxAgeDays", "0"));
+    }
+
+    public void setRetentionMaxAgeDays(int value) {
+        properties.setProperty("retentionMaxAgeDays", String.valueOf(value));
+        saveSettings();
+    }
+
+    public long getRetentionMaxBytes() {
+        return Long.parseLong(properties.getProperty("retentionMaxBytes", "0"));
+    }
+
+    public void setRetentionMaxBytes(long value) {
+        properties.setProperty("retentionMaxBytes", String.valueOf(value));
+        saveSettings();
+    }
+
+    public int getRetentionMaxPerType() {
+        return Integer.parseInt(properties.getProperty("retentionMaxPerType", "0"));
+    }
+
+    public void setRetentionMaxPerType(int value) {
+        properties.setProperty("retentionMaxPerType", String.valueOf(value));
+        saveSettings();
+    }
+
+    public int getSecretExpiryMinutes() {
+        return Integer.parseInt(properties.getProperty("secretExpiryMinutes", "0"));
+    }
+
+    public void setSecretExpiryMinutes(int value) {
+        properties.setProperty("secretExpiryMinutes", String.valueOf(value));
+        saveSettings();
+    }
+
+    public String getSensitiveAction() {
+        return properties.getProperty("sensitiveAction", "skip");
+    }
+
+    public void setSensitiveAction(String action) {
+        properties.setProperty("sensitiveAction", action);
+        saveSettings();
+    }
+
+    // Whether long mixed tokens with no known shape are taken for passwords. Off by default,
+    // paths and class names look just like them.
+    public boolean isDetectPasswordLike() {
+        return Boolean.parseBoolean(properties.getProperty("detectPasswordLike", "false"));
+    }
+
+    public void setDetectPasswordLike(boolean value) {
+        properties.setProperty("detectPasswordLike", String.valueOf(value));
+        saveSettings();
+    }
+
+    // frecency: a full history drops its least used item, age: it drops the oldest
+    public String getEvictionPolicy() {
+        return properties.getProperty("evictionPolicy", "frecency");
+    }
+
+    public void setEvictionPolicy(String value) {
+        properties.setProperty("evictionPolicy", value);
+        saveSettings();
+    }
+
+    // recent, frecency or mostUsed, the order the modal lists the history in
+    public String getHistoryView() {
+        return properties.getProperty("historyView", "recent");
+    }
+
+    public void setHistoryView(String value) {
+        properties.setProperty("historyView", value);
+        saveSettings();
+    }
+
+    // How long the modal stays hidden before it lets go of its rows and caches
+    public int getIdleReleaseMinutes() {
+        return Integer.parseInt(properties.getProperty("idleReleaseMinutes", "10"));
+    }
+
+    public void setIdleReleaseMinutes(int value) {
+        properties.setProperty("idleReleaseMinutes", String.valueOf(value));
+        saveSettings();
+    }
+
+    // newline, blankLine, space, comma or tab, what goes between items copied together
+    public String getJoinSeparator() {
+        return properties.getProperty("joinSeparator", "newline");
+    }
+
+    public void setJoinSeparator(String value) {
+        properties.setProperty("joinSeparator", value);
+        saveSettings();
+    }
+}
@@ -0,0 +1,67 @@
+package com.clipedge;
+
+// 64-bit SimHash over character trigrams: texts that share most of their trigrams get
+// fingerprints that differ in only a few bits. Case and runs of whitespace are ignored.
+public final class SimHash {
+    // Below this there are too few trigrams for the bits to mean anything
+    public static final int MIN_LENGTH = 12;
+    // Long payloads are fingerprinted by their start, like ContentClassifier does
+    private static final int WINDOW = 8 * 1024;
+
+    private SimHash() {
+    }
+
+    // 0 for texts too short to fingerprint
+    public static long fingerprint(CharSequence text) {
+        int end = Math.min(text.length(), WINDOW);
+        int[] weights = new int[64];
+        int features = 0;
+        // The last three normalized characters, packed 16 bits apiece
+        long window = 0;
+        int filled = 0;
+        boolean lastWasSpace = true;
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (lastWasSpace) {
+                    continue;
+                }
+                c = ' ';
+                lastWasSpace = true;
+            } else {
+                c = Character.toLowerCase(c);
+                lastWasSpace = false;
+            }
+            window = ((window << 16) | c) & 0xFFFF_FFFF_FFFFL;
+            if (++filled >= 3) {
+                long hash = mix(window);
+                for (int bit = 0; bit < 64; bit++) {
+                    weights[bit] += (int) ((hash >>> bit) & 1) * 2 - 1;
+                }
+                features++;
+            }
+        }
+        if (features + 2 < MIN_LENGTH) {
+            return 0;
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    // SplitMix64 finalizer, spreads neighbouring trigrams over all 64 bits
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,222 @@
+package com.clipedge;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import javafx.util.Duration;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Runs synthetic captures, copies, deletes, show/hide and resize cycles through a real
+// ClipboardManager and ClipboardModal for hours, sampling heap after GC, the modal's scene
+// nodes, threads, registered listeners and open files. Exits with 1 when any of them kept
+// growing. Needs a display, the history lives in a temporary directory.
+// Run with: java -p <module path> -m com.clipedge/com.clipedge.SoakTest
+//           [--hours H] [--cycle-ms N] [--sample-minutes M] [--warmup-minutes W]
+public class SoakTest extends Application {
+    private static final long MB = 1024 * 1024;
+
+    private double hours = 8;
+    private double cycleMs = 200;
+    private double sampleMinutes = 5;
+    private double warmupMinutes = 10;
+
+    private final Random random = new Random(42);
+    private final LeakCheck leakCheck = new LeakCheck();
+    private Path dir;
+    private ClipboardManager clipboardManager;
+    private ClipboardModal modal;
+    private FloatingMenu menu;
+    private Timeline cycles;
+    private long startMillis;
+    private long steps = 0;
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+    @Override
+    public void start(Stage primaryStage) throws IOException {
+        List<String> args = getParameters().getRaw();
+        for (int i = 0; i + 1 < args.size(); i += 2) {
+            double value = Double.parseDouble(args.get(i + 1));
+            switch (args.get(i)) {
+                case "--hours":
+                    hours = value;
+                    break;
+                case "--cycle-ms":
+                    cycleMs = value;
+                    break;
+                case "--sample-minutes":
+                    sampleMinutes = value;
+                    break;
+                case "--warmup-minutes":
+                    warmupMinutes = value;
+                    break;
+                default:
+                    System.err.println("Unknown option " + args.get(i));
+                    Platform.exit();
+                    System.exit(2);
+            }
+        }
+
+        dir = Files.createTempDirectory("clipedge-soak");
+        SettingsManager settings = new SettingsManager(dir.resolve("settings.properties"));
+        // Idle releases are part of what is soaked
+        settings.setIdleReleaseMinutes(1);
+        clipboardManager = new ClipboardManager(settings, new IndexedHistoryStore(dir.resolve("history.db")),
+                new JsonHistoryStore(dir.resolve("pinned.json")));
+        PerformanceMode performanceMode = new PerformanceMode(settings);
+        menu = new FloatingMenu(settings, performanceMode);
+        menu.show();
+        modal = new ClipboardModal(clipboardManager, settings, menu, performanceMode);
+
+        leakCheck.gauge("heapAfterGcBytes", MemoryStats::heapAfterGcBytes, 0.25, 8 * MB);
+        leakCheck.gauge("sceneNodes", () -> countNodes(modal.getScene().getRoot()), 0.10, 50);
+        leakCheck.gauge("threads", MemoryStats::threadCount, 0, 4);
+        leakCheck.gauge("historyListeners", clipboardManager::historyListenerCount, 0, 0);
+        leakCheck.gauge("themeListeners", settings::themeListenerCount, 0, 0);
+        leakCheck.gauge("performanceScenes", performanceMode::registeredSceneCount, 0, 0);
+        leakCheck.gauge("openFiles", MemoryStats::openFileDescriptors, 0, 8);
+
+        startMillis = System.currentTimeMillis();
+        cycles = new Timeline(new KeyFrame(Duration.millis(cycleMs), e -> cycle()));
+        cycles.setCycleCount(Animation.INDEFINITE);
+        cycles.play();
+        Timeline sampling = new Timeline(new KeyFrame(Duration.minutes(sampleMinutes), e -> sample()));
+        sampling.setCycleCount(Animation.INDEFINITE);
+        sampling.setDelay(Duration.minutes(warmupMinutes));
+        sampling.play();
+    }
+
+    private void cycle() {
+        steps++;
+        switch (random.nextInt(8)) {
+            case 0:
+            case 1:
+            case 2:
+                clipboardManager.addClipboardItem(syntheticText());
+                // The app refreshes a showing modal after every capture batch
+                if (modal.isShowing()) {
+                    modal.refreshItems();
+                }
+                break;
+            case 3:
+                ClipboardItem toCopy = randomItem();
+                if (toCopy != null) {
+                    LazyTransferable.copy(clipboardManager, toCopy);
+                }
+                break;
+            case 4:
+                ClipboardItem toDelete = randomItem();
+                if (toDelete != null) {
+                    clipboardManager.removeItem(toDelete);
+                    if (modal.isShowing()) {
+                        modal.refreshItems();
+                    }
+                }
+                break;
+            case 5:
+            case 6:
+                if (modal.isShowing()) {
+                    modal.hide();
+                } else {
+                    modal.showNearMenu(menu);
+                }
+                break;
+            default:
+                if (modal.isShowing()) {
+                    Window window = modal.getScene().getWindow();
+                    window.setWidth(400 + random.nextInt(400));
+                    window.setHeight(500 + random.nextInt(400));
+                }
+                break;
+        }
+    }
+
+    // Always taken with the modal up and a fresh first page, so node counts compare
+    private void sample() {
+        if (!modal.isShowing()) {
+            modal.showNearMenu(menu);
+        } else {
+            modal.refreshItems();
+        }
+        leakCheck.sample();
+        System.out.println(String.format("soak: %.1f h, %d steps, %d samples",
+                (System.currentTimeMillis() - startMillis) / 3_600_000.0, steps, leakCheck.sampleCount()));
+        if (System.currentTimeMillis() - startMillis >= hours * 3_600_000) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        cycles.stop();
+        leakCheck.print(System.out);
+        List<String> failures = leakCheck.failures();
+        for (String failure : failures) {
+            System.out.println("FAIL " + failure);
+        }
+        if (failures.isEmpty()) {
+            System.out.println("soak: no growth after " + steps + " steps");
+        }
+        try {
+            deleteRecursively(dir);
+        } catch (IOException e) {
+            System.err.println("Error removing soak test files: " + e.getMessage());
+        }
+        Platform.exit();
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    private ClipboardItem randomItem() {
+        List<ClipboardItem> page = clipboardManager.page(0, 30);
+        return page.isEmpty() ? null : page.get(random.nextInt(page.size()));
+    }
+
+    // Mostly short text, with the odd multi-line block and repeat so dedup and grouping get exercised
+    private String syntheticText() {
+        int kind = random.nextInt(10);
+        if (kind == 0) {
+            return "repeated snippet " + random.nextInt(5);
+        }
+        StringBuilder text = new StringBuilder();
+        int words = kind == 1 ? 200 + random.nextInt(800) : 3 + random.nextInt(20);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(i % 12 == 0 && kind == 1 ? '\n' : ' ');
+            }
+            int length = 2 + random.nextInt(8);
+            for (int c = 0; c < length; c++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return text.toString();
+    }
+
+    private static long countNodes(Parent parent) {
+        long count = 1;
+        for (Node child : parent.getChildrenUnmodifiable()) {
+            count += child instanceof Parent ? countNodes((Parent) child) : 1;
+        }
+        return count;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.clipedge;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import java.time.Instant;
+
+public final class StartupMetrics {
+    private static final long DEFAULT_TARGET_MS = 800;
+    private static long launchNanos = System.nanoTime();
+
+    private StartupMetrics() {
+    }
+
+    public static void markLaunch() {
+        launchNanos = System.nanoTime();
+    }
+
+    // Runs the callback once the scene has gone through its first pulse
+    public static void onFirstFrame(Scene scene, Runnable callback) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            long elapsed = millisSinceProcessStart();
+            Metrics.set("startup.firstFrameMs", elapsed);
+            if (Boolean.getBoolean("clipedge.startupReport")) {
+                report(elapsed);
+            }
+            // Let the frame reach the screen before doing more work on the FX thread
+            Platform.runLater(callback);
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    public static long millisSinceProcessStart() {
+        return ProcessHandle.current().info().startInstant()
+                .map(start -> Instant.now().toEpochMilli() - start.toEpochMilli())
+                .orElse((System.nanoTime() - launchNanos) / 1_000_000);
+    }
+
+    // Printed only with -Dclipedge.startupReport=true, the metric is always there
+    private static void report(long elapsed) {
+        long target = Long.getLong("clipedge.startupTargetMs", DEFAULT_TARGET_MS);
+        System.out.println("Time to first frame: " + elapsed + " ms (target " + target + " ms)");
+        if (elapsed > target) {
+            System.err.println("Startup exceeded target by " + (elapsed - target) + " ms");
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.clipedge;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+// Compares save and load costs of the history stores, mainly to keep an eye on what
+// encryption adds over the plain log.
+// Run with: java -p <module path> -m com.clipedge/com.clipedge.StoreBenchmark [items] [chars]
+public class StoreBenchmark {
+    private interface StoreFactory {
+        HistoryStore open(Path dir) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int chars = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        byte[] key = new byte[32];
+        System.out.println(String.format(Locale.ROOT, "%d items of %d chars", items, chars));
+        System.out.println(String.format(Locale.ROOT, "%-10s %12s %12s %12s %12s %12s",
+                "store", "append us", "flush ms", "open ms", "page us", "next page us"));
+        // The first round only warms up the JIT
+        for (int round = 0; round < 2; round++) {
+            boolean report = round == 1;
+            run("json", items, chars, report, dir -> new JsonHistoryStore(dir.resolve("history.json")));
+            run("indexed", items, chars, report, dir -> new IndexedHistoryStore(dir.resolve("history.db")));
+            run("encrypted", items, chars, report,
+                    dir -> new IndexedHistoryStore(dir.resolve("history.edb"), new RecordCipher(key)));
+        }
+    }
+
+    private static void run(String name, int items, int chars, boolean report, StoreFactory factory) throws IOException {
+        Path dir = Files.createTempDirectory("clipedge-bench");
+        try {
+            HistoryStore store = factory.open(dir);
+            long start = System.nanoTime();
+            for (int i = 0; i < items; i++) {
+                store.append(new ClipboardItem(text(i, chars)));
+            }
+            long appended = System.nanoTime();
+            store.flush();
+            long flushed = System.nanoTime();
+            store.close();
+
+            long openStart = System.nanoTime();
+            HistoryStore reopened = factory.open(dir);
+            long opened = System.nanoTime();
+            // Cold first page as the modal loads it, this includes setting up the cipher
+            List<ClipboardItem> page = reopened.page(0, 30);
+            long paged = System.nanoTime();
+            reopened.page(30, 30);
+            long nextPaged = System.nanoTime();
+            reopened.close();
+
+            if (page.size() != Math.min(30, items)) {
+                throw new IllegalStateException(name + " returned " + page.size() + " items");
+            }
+            if (report) {
+                System.out.println(String.format(Locale.ROOT, "%-10s %12.2f %12.2f %12.2f %12.2f %12.2f", name,
+                        (appended - start) / 1000.0 / items,
+                        (flushed - appended) / 1_000_000.0,
+                        (opened - openStart) / 1_000_000.0,
+                        (paged - opened) / 1000.0,
+                        (nextPaged - paged) / 1000.0));
+            }
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    private static String text(int index, int chars) {
+        StringBuilder out = new StringBuilder(chars);
+        out.append("item ").append(index).append(' ');
+        while (out.length() < chars) {
+            out.append("lorem ipsum dolor sit amet ");
+        }
+        out.setLength(chars);
+        return out.toString();
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.clipedge;
+
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+
+public class SystemClipboardSource implements ClipboardSource {
+    private Clipboard clipboard;
+
+    @Override
+    public String readText() throws Exception {
+        // Our own copies are already in the history and may be too large to read back
+        if (LazyTransferable.ownsClipboard(clipboard()) || !clipboard().isDataFlavorAvailable(DataFlavor.stringFlavor)) {
+            return null;
+        }
+        return (String) clipboard().getData(DataFlavor.stringFlavor);
+    }
+
+    @Override
+    public boolean isConcealed() {
+        return SensitiveContentDetector.isConcealed(clipboard());
+    }
+
+    // Looked up on the monitor thread, not by whoever creates the source
+    private Clipboard clipboard() {
+        if (clipboard == null) {
+            SensitiveContentDetector.registerConcealedHints();
+            clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+        }
+        return clipboard;
+    }
+}
@@ -0,0 +1,52 @@
+package com.clipedge;
+
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class Themes {
+    public static final List<String> AVAILABLE = List.of("dark", "light");
+
+    private static final String BASE_STYLESHEET = "/styles/clipedge.css";
+    private static final String DEFAULT_THEME = "dark";
+
+    private static final Map<String, List<String>> stylesheets = new ConcurrentHashMap<>();
+
+    private Themes() {
+    }
+
+    // JavaFX caches parsed stylesheets by URL, so switching only re-applies already parsed rules
+    public static void apply(Scene scene, String theme) {
+        scene.getStylesheets().setAll(stylesheetsFor(theme));
+    }
+
+    public static void apply(Parent parent, String theme) {
+        parent.getStylesheets().setAll(stylesheetsFor(theme));
+    }
+
+    public static String next(String theme) {
+        int index = AVAILABLE.indexOf(normalize(theme));
+        return AVAILABLE.get((index + 1) % AVAILABLE.size());
+    }
+
+    private static List<String> stylesheetsFor(String theme) {
+        return stylesheets.computeIfAbsent(normalize(theme),
+                name -> List.of(toExternalForm(BASE_STYLESHEET), toExternalForm("/styles/theme-" + name + ".css")));
+    }
+
+    private static String normalize(String theme) {
+        String name = theme != null ? theme.toLowerCase() : DEFAULT_THEME;
+        return AVAILABLE.contains(name) ? name : DEFAULT_THEME;
+    }
+
+    private static String toExternalForm(String path) {
+        URL url = Themes.class.getResource(path);
+        if (url == null) {
+            throw new IllegalStateException("Missing stylesheet: " + path);
+        }
+        return url.toExternalForm();
+    }
+}
@@ -0,0 +1,70 @@
+package com.clipedge;
+
+import java.time.LocalDate;
+
+// A span of capture times, from inclusive to exclusive, in epoch milliseconds
+public final class TimeRange {
+    public static final TimeRange ALL = new TimeRange(Long.MIN_VALUE, Long.MAX_VALUE);
+
+    private final long from;
+    private final long to;
+
+    public TimeRange(long from, long to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    // Whole days, first and last included
+    public static TimeRange days(LocalDate first, LocalDate last) {
+        if (last.isBefore(first)) {
+            return days(last, first);
+        }
+        return new TimeRange(Timestamps.startOfDay(first), Timestamps.startOfDay(last.plusDays(1)));
+    }
+
+    public static TimeRange day(LocalDate date) {
+        return days(date, date);
+    }
+
+    // Everything up to the end of the given day, for jumping back to it
+    public static TimeRange until(LocalDate date) {
+        return new TimeRange(Long.MIN_VALUE, Timestamps.startOfDay(date.plusDays(1)));
+    }
+
+    public static TimeRange today() {
+        return day(LocalDate.now());
+    }
+
+    public static TimeRange yesterday() {
+        return day(LocalDate.now().minusDays(1));
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public boolean isAll() {
+        return from == Long.MIN_VALUE && to == Long.MAX_VALUE;
+    }
+
+    public boolean contains(long millis) {
+        return millis >= from && millis < to;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TimeRange that = (TimeRange) o;
+        return from == that.from && to == that.to;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(from) * 31 + Long.hashCode(to);
+    }
+}
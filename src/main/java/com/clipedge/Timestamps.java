@@ -0,0 +1,80 @@
+package com.clipedge;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Capture times are epoch milliseconds. Older histories stored ISO local date-times, which
+// are read in the system time zone.
+public final class Timestamps {
+    private static final AtomicLong last = new AtomicLong();
+
+    private Timestamps() {
+    }
+
+    // Never goes back within a run, so items captured later never sort before earlier ones
+    // when the clock is set back
+    public static long now() {
+        long current = System.currentTimeMillis();
+        return last.accumulateAndGet(current, Math::max);
+    }
+
+    // 0 when the text is not an ISO local date-time
+    public static long parse(String isoLocal) {
+        if (isoLocal == null || isoLocal.isEmpty()) {
+            return 0;
+        }
+        try {
+            return LocalDateTime.parse(isoLocal).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    // The ISO local date-time the history used to store, empty for an unknown time
+    public static String format(long millis) {
+        if (millis == 0) {
+            return "";
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault())
+                .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
+    public static long startOfDay(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public static LocalDate dateOf(long millis) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    // Writes numbers and reads both numbers and the old ISO strings
+    static class JsonAdapter extends TypeAdapter<Long> {
+        @Override
+        public void write(JsonWriter out, Long value) throws IOException {
+            out.value(value != null ? value : 0);
+        }
+
+        @Override
+        public Long read(JsonReader in) throws IOException {
+            JsonToken token = in.peek();
+            if (token == JsonToken.NULL) {
+                in.nextNull();
+                return 0L;
+            }
+            if (token == JsonToken.NUMBER) {
+                return in.nextLong();
+            }
+            return parse(in.nextString());
+        }
+    }
+}
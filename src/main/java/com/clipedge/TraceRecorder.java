@@ -0,0 +1,176 @@
+package com.clipedge;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// Writes a JSON line per capture the monitor sees: when it came relative to the start of
+// the trace, its length, a keyed hash of it and, when asked for, the text itself or a redacted
+// copy. Turned on with -Dclipedge.trace=<file> and -Dclipedge.trace.payload=none|redacted|full.
+public class TraceRecorder {
+    public enum Payload { NONE, REDACTED, FULL }
+
+    static class Event {
+        long t;
+        int size;
+        String hash;
+        boolean concealed;
+        String text;
+    }
+
+    private final Gson gson = new Gson();
+    private final BufferedWriter out;
+    private final Payload payload;
+    private final long startNanos = System.nanoTime();
+    // Keyed with a random key that is never written down, so a trace shows which captures
+    // were equal but a guessed text cannot be checked against it. A replay only needs the
+    // hash as a seed.
+    private final Mac textHash;
+
+    public TraceRecorder(Path file, Payload payload) throws IOException {
+        try {
+            byte[] key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            this.textHash = Mac.getInstance("HmacSHA256");
+            this.textHash.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Hashing is not available: " + e.getMessage(), e);
+        }
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.payload = payload;
+    }
+
+    // null unless a trace was asked for
+    public static TraceRecorder fromSystemProperties() {
+        String file = System.getProperty("clipedge.trace");
+        if (file == null || file.isBlank()) {
+            return null;
+        }
+        try {
+            Payload payload = Payload.valueOf(System.getProperty("clipedge.trace.payload", "none").toUpperCase());
+            return new TraceRecorder(Paths.get(file), payload);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error starting capture trace: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public synchronized void record(String text, boolean concealed) {
+        Event event = new Event();
+        event.t = (System.nanoTime() - startNanos) / 1_000_000;
+        event.size = text.length();
+        event.hash = hash(text);
+        event.concealed = concealed;
+        // Secrets never go into a trace as they are, guessed ones included
+        boolean secret = concealed || SensitiveContentDetector.isSensitive(text, true);
+        if (payload == Payload.FULL && !secret) {
+            event.text = text;
+        } else if (payload != Payload.NONE) {
+            event.text = redact(text, event.hash);
+        }
+        try {
+            out.write(gson.toJson(event));
+            out.newLine();
+            // A trace is usually taken to catch a slowdown, so it has to survive the app being killed
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing capture trace: " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.err.println("Error closing capture trace: " + e.getMessage());
+        }
+    }
+
+    static List<Event> read(Path file) throws IOException {
+        Gson gson = new Gson();
+        List<Event> events = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    Event event = gson.fromJson(line, Event.class);
+                    if (event != null && event.hash != null && event.size > 0) {
+                        events.add(event);
+                    }
+                } catch (JsonParseException e) {
+                    throw new IOException("Bad trace line: " + line, e);
+                }
+            }
+        }
+        return events;
+    }
+
+    // The text a replay copies for an event: what was recorded, or else made up from the
+    // hash so the same content always comes back as the same text
+    static String textOf(Event event) {
+        if (event.text != null) {
+            return event.text;
+        }
+        Random random = new Random(Long.parseUnsignedLong(event.hash, 16));
+        StringBuilder text = new StringBuilder(event.size);
+        int wordLeft = 0;
+        while (text.length() < event.size) {
+            if (wordLeft == 0 && text.length() > 0 && text.length() < event.size - 1) {
+                text.append(random.nextInt(20) == 0 ? '\n' : ' ');
+                wordLeft = 2 + random.nextInt(8);
+            } else {
+                text.append((char) ('a' + random.nextInt(26)));
+                wordLeft = Math.max(0, wordLeft - 1);
+            }
+        }
+        return text.toString();
+    }
+
+    // First 64 bits of the HMAC-SHA256 of the text under this trace's key, in hex
+    private String hash(String text) {
+        byte[] digest = textHash.doFinal(text.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder(16);
+        for (int i = 0; i < 8; i++) {
+            hex.append(String.format("%02x", digest[i]));
+        }
+        return hex.toString();
+    }
+
+    // Letters and digits are swapped for others drawn from the hash, whitespace and
+    // punctuation stay, so the copy keeps the original's length, lines and shape
+    private static String redact(String text, String hash) {
+        Random random = new Random(Long.parseUnsignedLong(hash, 16));
+        StringBuilder redacted = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isDigit(c)) {
+                redacted.append((char) ('0' + random.nextInt(10)));
+            } else if (Character.isUpperCase(c)) {
+                redacted.append((char) ('A' + random.nextInt(26)));
+            } else if (Character.isLetter(c)) {
+                redacted.append((char) ('a' + random.nextInt(26)));
+            } else {
+                redacted.append(c);
+            }
+        }
+        return redacted.toString();
+    }
+}
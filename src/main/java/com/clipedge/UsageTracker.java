@@ -0,0 +1,240 @@
+package com.clipedge;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+// Exponentially decayed use counts per item. A use at time t adds e^(-λ(now - t)) to an
+// item's score, and each score is kept as ln Σ e^(λ t), which no longer depends on now.
+// Decay then never reorders items, so the ranking is only touched when an item is used
+// and the top of it is always ready to read. Not thread-safe, ClipboardManager guards it.
+public class UsageTracker {
+    private static final double HALF_LIFE_HOURS = 72;
+    private static final double DECAY_PER_MS = Math.log(2) / (HALF_LIFE_HOURS * 3_600_000);
+
+    private static class Usage {
+        final String id;
+        double logScore;
+        int uses;
+
+        Usage(String id, double logScore, int uses) {
+            this.id = id;
+            this.logScore = logScore;
+            this.uses = uses;
+        }
+    }
+
+    // What is written to disk, per item id its log score and how often it was used
+    private static class Saved {
+        double halfLifeHours;
+        Map<String, double[]> items;
+    }
+
+    private static final Comparator<Usage> HIGHEST_FIRST = Comparator.<Usage>comparingDouble(u -> -u.logScore)
+            .thenComparing(u -> u.id);
+
+    private final Path file;
+    private final Gson gson = new Gson();
+    private final Map<String, Usage> byId = new HashMap<>();
+    private final TreeSet<Usage> ranking = new TreeSet<>(HIGHEST_FIRST);
+    // Only items that were actually used, for the most used view
+    private final TreeSet<Usage> used = new TreeSet<>(HIGHEST_FIRST);
+    private boolean dirty = false;
+
+    public UsageTracker() {
+        this(null);
+    }
+
+    // Scores are kept in the given file, or only in memory without one
+    public UsageTracker(Path file) {
+        this.file = file;
+        load();
+    }
+
+    // A capture counts towards the score like a use, without counting as one
+    public void recordCapture(String id, long whenMillis) {
+        bump(id, whenMillis, 0);
+    }
+
+    public void recordUse(String id, long whenMillis) {
+        bump(id, whenMillis, 1);
+        Metrics.increment("usage.uses");
+    }
+
+    // Adds a capture for an item seen for the first time, e.g. one loaded from disk
+    public void ensure(String id, long capturedMillis) {
+        if (!byId.containsKey(id)) {
+            recordCapture(id, capturedMillis);
+        }
+    }
+
+    // Hands one item's history on to another, when a re-capture replaces it
+    public void transfer(String fromId, String toId) {
+        Usage from = detach(fromId);
+        if (from == null) {
+            return;
+        }
+        detach(toId);
+        attach(new Usage(toId, from.logScore, from.uses));
+    }
+
+    public void remove(String id) {
+        detach(id);
+    }
+
+    // Forgets every item not in the given set
+    public void retain(Collection<String> ids) {
+        Set<String> keep = ids instanceof Set ? (Set<String>) ids : new HashSet<>(ids);
+        List<String> stale = new ArrayList<>();
+        for (String id : byId.keySet()) {
+            if (!keep.contains(id)) {
+                stale.add(id);
+            }
+        }
+        for (String id : stale) {
+            detach(id);
+        }
+    }
+
+    // The decayed score at the given time, 0 for an unknown item
+    public double score(String id, long nowMillis) {
+        Usage usage = byId.get(id);
+        return usage != null ? Math.exp(usage.logScore - DECAY_PER_MS * nowMillis) : 0;
+    }
+
+    public int uses(String id) {
+        Usage usage = byId.get(id);
+        return usage != null ? usage.uses : 0;
+    }
+
+    // The k items used most, going by decayed score
+    public List<String> top(int k) {
+        List<String> ids = new ArrayList<>(Math.min(k, used.size()));
+        for (Usage usage : used) {
+            if (ids.size() == k) {
+                break;
+            }
+            ids.add(usage.id);
+        }
+        return ids;
+    }
+
+    // Every item, highest frecency first
+    public Iterable<String> ranked() {
+        return () -> new Iterator<>() {
+            private final Iterator<Usage> inner = ranking.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return inner.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return inner.next().id;
+            }
+        };
+    }
+
+    // The eligible item with the lowest frecency, null when there is none
+    public String lowest(Predicate<String> eligible) {
+        for (Iterator<Usage> it = ranking.descendingIterator(); it.hasNext(); ) {
+            Usage usage = it.next();
+            if (eligible.test(usage.id)) {
+                return usage.id;
+            }
+        }
+        return null;
+    }
+
+    public void save() {
+        if (!dirty || file == null) {
+            return;
+        }
+        Saved saved = new Saved();
+        saved.halfLifeHours = HALF_LIFE_HOURS;
+        saved.items = new HashMap<>();
+        for (Usage usage : byId.values()) {
+            saved.items.put(usage.id, new double[]{usage.logScore, usage.uses});
+        }
+        try {
+            SafeFiles.writeAtomically(file, gson.toJson(saved).getBytes(StandardCharsets.UTF_8));
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("Error saving usage scores: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        try {
+            Saved saved = gson.fromJson(Files.readString(file), Saved.class);
+            // Scores taken with another half-life do not compare, items start over from their captures
+            if (saved == null || saved.items == null || saved.halfLifeHours != HALF_LIFE_HOURS) {
+                return;
+            }
+            for (Map.Entry<String, double[]> entry : saved.items.entrySet()) {
+                double[] values = entry.getValue();
+                if (values != null && values.length == 2 && Double.isFinite(values[0])) {
+                    attach(new Usage(entry.getKey(), values[0], (int) values[1]));
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            System.err.println("Error loading usage scores: " + e.getMessage());
+        }
+    }
+
+    private void bump(String id, long whenMillis, int uses) {
+        double point = DECAY_PER_MS * whenMillis;
+        Usage usage = detach(id);
+        if (usage == null) {
+            usage = new Usage(id, point, uses);
+        } else {
+            usage.logScore = logAddExp(usage.logScore, point);
+            usage.uses += uses;
+        }
+        attach(usage);
+    }
+
+    private void attach(Usage usage) {
+        byId.put(usage.id, usage);
+        ranking.add(usage);
+        if (usage.uses > 0) {
+            used.add(usage);
+        }
+        dirty = true;
+    }
+
+    // Entries leave the sorted sets before their score changes, or they could not be found again
+    private Usage detach(String id) {
+        Usage usage = byId.remove(id);
+        if (usage != null) {
+            ranking.remove(usage);
+            used.remove(usage);
+            dirty = true;
+        }
+        return usage;
+    }
+
+    // ln(e^a + e^b) without leaving the log domain
+    private static double logAddExp(double a, double b) {
+        double max = Math.max(a, b);
+        return max + Math.log1p(Math.exp(-Math.abs(a - b)));
+    }
+}
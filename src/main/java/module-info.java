@@ -3,6 +3,7 @@ module com.clipedge {
     requires javafx.fxml;
     requires javafx.graphics;
     requires java.desktop;
+    requires java.management;
     requires com.google.gson;
     
     exports com.clipedge;